@@ -0,0 +1,24 @@
+package com.github.directringcache;
+
+public interface OffHeapCache<K, V>
+{
+
+    V get( K key );
+
+    boolean containsKey( K key );
+
+    void put( K key, V value );
+
+    boolean remove( K key );
+
+    V compute( K key, RemappingFunction<K, V> remappingFunction );
+
+    long size();
+
+    long getEvictionCount();
+
+    void clear();
+
+    void close();
+
+}
@@ -0,0 +1,71 @@
+package com.github.directringcache;
+
+import com.github.directringcache.impl.OffHeapCacheImpl;
+
+public final class OffHeapCacheBuilder<K, V>
+{
+
+    public static final int DEFAULT_BLOCK_BYTE_SIZE = 1024 * 1024;
+
+    public static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+    private final PartitionBufferPool partitionBufferPool;
+
+    private final Serializer<K> keySerializer;
+
+    private final Serializer<V> valueSerializer;
+
+    private int blockByteSize = DEFAULT_BLOCK_BYTE_SIZE;
+
+    private int initialCapacity = DEFAULT_INITIAL_CAPACITY;
+
+    // 0 stripes the index by the pool's partition count
+    private int concurrencyLevel;
+
+    public OffHeapCacheBuilder( PartitionBufferPool partitionBufferPool, Serializer<K> keySerializer,
+                                Serializer<V> valueSerializer )
+    {
+        this.partitionBufferPool = partitionBufferPool;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+    }
+
+    public OffHeapCacheBuilder<K, V> withBlockByteSize( int blockByteSize )
+    {
+        if ( blockByteSize <= 0 )
+        {
+            throw new IllegalArgumentException( "blockByteSize must be positive" );
+        }
+        this.blockByteSize = blockByteSize;
+        return this;
+    }
+
+    public OffHeapCacheBuilder<K, V> withInitialCapacity( int initialCapacity )
+    {
+        if ( initialCapacity <= 0 )
+        {
+            throw new IllegalArgumentException( "initialCapacity must be positive" );
+        }
+        this.initialCapacity = initialCapacity;
+        return this;
+    }
+
+    public OffHeapCacheBuilder<K, V> withConcurrencyLevel( int concurrencyLevel )
+    {
+        if ( concurrencyLevel <= 0 )
+        {
+            throw new IllegalArgumentException( "concurrencyLevel must be positive" );
+        }
+        this.concurrencyLevel = concurrencyLevel;
+        return this;
+    }
+
+    public OffHeapCache<K, V> build()
+    {
+        int concurrencyLevel =
+            this.concurrencyLevel > 0 ? this.concurrencyLevel : partitionBufferPool.getPartitionCount();
+        return new OffHeapCacheImpl<K, V>( partitionBufferPool, keySerializer, valueSerializer, blockByteSize,
+                                           initialCapacity, concurrencyLevel );
+    }
+
+}
@@ -1,41 +1,79 @@
 package com.github.directringcache;
 
+import java.util.concurrent.TimeUnit;
+
 import com.github.directringcache.impl.BufferUtils;
 import com.github.directringcache.impl.ByteBufferPooledPartition;
 import com.github.directringcache.impl.PartitionBufferPoolImpl;
 import com.github.directringcache.selector.ThreadLocalPartitionSliceSelector;
 import com.github.directringcache.spi.PartitionFactory;
 import com.github.directringcache.spi.PartitionSliceSelector;
+import com.github.directringcache.spi.PartitionSliceSelectorFactory;
 
 public final class PartitionBufferBuilder
 {
 
     private static final int DEFAULT_PARTITIONS_COUNT = Runtime.getRuntime().availableProcessors();
 
+    private static final PartitionSliceSelectorFactory DEFAULT_PARTITION_SLICE_SELECTOR_FACTORY =
+        new PartitionSliceSelectorFactory()
+        {
+
+            @Override
+            public PartitionSliceSelector newPartitionSliceSelector()
+            {
+                return new ThreadLocalPartitionSliceSelector();
+            }
+        };
+
     private final PartitionFactory partitionFactory;
 
     private final PartitionSliceSelector partitionSliceSelector;
 
+    private final PartitionSliceSelectorFactory partitionSliceSelectorFactory;
+
+    private int magazineDepth = 0;
+
+    private long minMemoryByteSize = -1;
+
+    private long partitionIdleNanos = 0;
+
+    private boolean snapshots = false;
+
     public PartitionBufferBuilder( PartitionFactory partitionFactory, PartitionSliceSelector partitionSliceSelector )
     {
         this.partitionFactory = partitionFactory;
         this.partitionSliceSelector = partitionSliceSelector;
+        this.partitionSliceSelectorFactory = null;
     }
 
     public PartitionBufferBuilder( PartitionStrategy partitionStrategy, PartitionSliceSelector partitionSliceSelector )
     {
-        this.partitionFactory = partitionStrategy.getPartitionFactory();
-        this.partitionSliceSelector = partitionSliceSelector;
+        this( partitionStrategy.getPartitionFactory(), partitionSliceSelector );
+    }
+
+    public PartitionBufferBuilder( PartitionFactory partitionFactory,
+                                   PartitionSliceSelectorFactory partitionSliceSelectorFactory )
+    {
+        this.partitionFactory = partitionFactory;
+        this.partitionSliceSelector = null;
+        this.partitionSliceSelectorFactory = partitionSliceSelectorFactory;
+    }
+
+    public PartitionBufferBuilder( PartitionStrategy partitionStrategy,
+                                   PartitionSliceSelectorFactory partitionSliceSelectorFactory )
+    {
+        this( partitionStrategy.getPartitionFactory(), partitionSliceSelectorFactory );
     }
 
     public PartitionBufferBuilder( PartitionFactory partitionFactory )
     {
-        this( partitionFactory, new ThreadLocalPartitionSliceSelector() );
+        this( partitionFactory, DEFAULT_PARTITION_SLICE_SELECTOR_FACTORY );
     }
 
     public PartitionBufferBuilder( PartitionStrategy partitionStrategy )
     {
-        this( partitionStrategy.getPartitionFactory(), new ThreadLocalPartitionSliceSelector() );
+        this( partitionStrategy.getPartitionFactory(), DEFAULT_PARTITION_SLICE_SELECTOR_FACTORY );
     }
 
     public PartitionBufferBuilder( PartitionSliceSelector partitionSliceSelector )
@@ -43,6 +81,39 @@ public final class PartitionBufferBuilder
         this( ByteBufferPooledPartition.DIRECT_BYTEBUFFER_PARTITION_FACTORY, partitionSliceSelector );
     }
 
+    public PartitionBufferBuilder withMagazineDepth( int magazineDepth )
+    {
+        if ( magazineDepth < 0 )
+        {
+            throw new IllegalArgumentException( "magazineDepth must not be negative" );
+        }
+        this.magazineDepth = magazineDepth;
+        return this;
+    }
+
+    public PartitionBufferBuilder withElasticMemory( String minMemorySizeDescriptor, long partitionIdleTime,
+                                                     TimeUnit timeUnit )
+    {
+        long minMemoryByteSize = BufferUtils.descriptorToByteSize( minMemorySizeDescriptor );
+        if ( minMemoryByteSize < 0 )
+        {
+            throw new IllegalArgumentException( "minMemoryByteSize must not be negative" );
+        }
+        if ( partitionIdleTime <= 0 )
+        {
+            throw new IllegalArgumentException( "partitionIdleTime must be positive" );
+        }
+        this.minMemoryByteSize = minMemoryByteSize;
+        this.partitionIdleNanos = timeUnit.toNanos( partitionIdleTime );
+        return this;
+    }
+
+    public PartitionBufferBuilder withSnapshots()
+    {
+        this.snapshots = true;
+        return this;
+    }
+
     public PartitionBufferPool allocatePool( String memorySizeDescriptor, String sliceSizeDescriptor )
     {
         return allocatePool( memorySizeDescriptor, DEFAULT_PARTITIONS_COUNT, sliceSizeDescriptor );
@@ -128,7 +199,106 @@ public final class PartitionBufferBuilder
         }
 
         int slices = (int) ( partitionByteSize / sliceByteSize );
-        return new PartitionBufferPoolImpl( partitions, sliceByteSize, slices, partitionFactory, partitionSliceSelector );
+        return new PartitionBufferPoolImpl( minPartitions( partitions, partitionByteSize, 1 ), partitions,
+                                            partitionIdleNanos, new int[] { sliceByteSize }, new int[] { slices }, 1,
+                                            magazineDepth, snapshots, partitionFactory,
+                                            new PartitionSliceSelector[] { newPartitionSliceSelector() } );
+    }
+
+    public PartitionBufferPool allocateSizeClassedPool( String memorySizeDescriptor, int partitions,
+                                                        int slicesPerSizeClass, String... sliceSizeDescriptors )
+    {
+        long memoryByteSize = BufferUtils.descriptorToByteSize( memorySizeDescriptor );
+
+        int[] sliceByteSizes = new int[sliceSizeDescriptors.length];
+        for ( int i = 0; i < sliceSizeDescriptors.length; i++ )
+        {
+            long sliceByteSize = BufferUtils.descriptorToByteSize( sliceSizeDescriptors[i] );
+            if ( !BufferUtils.isPowerOfTwo( sliceByteSize ) )
+            {
+                throw new IllegalArgumentException( "sliceByteSize is not a power of 2" );
+            }
+            if ( sliceByteSize > Integer.MAX_VALUE )
+            {
+                throw new IllegalArgumentException(
+                                                    "Bytesize per slice will be a value larger than allowed slice maximum" );
+            }
+            sliceByteSizes[i] = (int) sliceByteSize;
+        }
+
+        return allocateSizeClassedPool( memoryByteSize, partitions, slicesPerSizeClass, sliceByteSizes );
+    }
+
+    public PartitionBufferPool allocateSizeClassedPool( long memoryByteSize, int partitions, int slicesPerSizeClass,
+                                                        int... sliceByteSizes )
+    {
+        if ( sliceByteSizes.length == 0 )
+        {
+            throw new IllegalArgumentException( "At least one sliceByteSize is required" );
+        }
+        if ( partitionSliceSelector != null && sliceByteSizes.length > 1 )
+        {
+            throw new IllegalStateException( "Selectors keep per partition set state, several size classes need a "
+                + "PartitionSliceSelectorFactory" );
+        }
+        if ( memoryByteSize % ( (long) partitions * sliceByteSizes.length ) != 0 )
+        {
+            throw new IllegalArgumentException( "partitions times size classes is not a divisor of memoryByteSize" );
+        }
+
+        // memoryByteSize is split evenly between the size classes, each with its own set of partitions
+        long partitionByteSize = memoryByteSize / sliceByteSizes.length / partitions;
+        if ( !BufferUtils.isPowerOfTwo( partitionByteSize ) )
+        {
+            throw new IllegalArgumentException( "partitionByteSize is not a power of 2" );
+        }
+        if ( partitionByteSize > Integer.MAX_VALUE )
+        {
+            throw new IllegalArgumentException(
+                                                "Bytesize per partition will be a value larger than allowed partition maximum" );
+        }
+
+        int[] slices = new int[sliceByteSizes.length];
+        PartitionSliceSelector[] partitionSliceSelectors = new PartitionSliceSelector[sliceByteSizes.length];
+        for ( int i = 0; i < sliceByteSizes.length; i++ )
+        {
+            if ( partitionByteSize % sliceByteSizes[i] != 0 )
+            {
+                throw new IllegalArgumentException( "sliceByteSize is not a divisor of the bytesize per partition" );
+            }
+            slices[i] = (int) ( partitionByteSize / sliceByteSizes[i] );
+            partitionSliceSelectors[i] = newPartitionSliceSelector();
+        }
+
+        return new PartitionBufferPoolImpl( minPartitions( partitions, partitionByteSize, sliceByteSizes.length ),
+                                            partitions, partitionIdleNanos, sliceByteSizes, slices, slicesPerSizeClass,
+                                            magazineDepth, snapshots, partitionFactory, partitionSliceSelectors );
+    }
+
+    private int minPartitions( int partitions, long partitionByteSize, int sizeClasses )
+    {
+        if ( minMemoryByteSize == -1 )
+        {
+            return partitions;
+        }
+        if ( minMemoryByteSize > sizeClasses * partitions * partitionByteSize )
+        {
+            throw new IllegalArgumentException( "minMemoryByteSize exceeds memoryByteSize" );
+        }
+
+        // Split like memoryByteSize, an elastic pool keeps at least one partition to serve the first request
+        long classMinMemoryByteSize = ( minMemoryByteSize + sizeClasses - 1 ) / sizeClasses;
+        long minPartitions = ( classMinMemoryByteSize + partitionByteSize - 1 ) / partitionByteSize;
+        return (int) Math.max( 1, minPartitions );
+    }
+
+    private PartitionSliceSelector newPartitionSliceSelector()
+    {
+        if ( partitionSliceSelectorFactory == null )
+        {
+            return partitionSliceSelector;
+        }
+        return partitionSliceSelectorFactory.newPartitionSliceSelector();
     }
 
 }
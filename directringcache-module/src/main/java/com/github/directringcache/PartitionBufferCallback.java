@@ -0,0 +1,10 @@
+package com.github.directringcache;
+
+public interface PartitionBufferCallback
+{
+
+    void completed( PartitionBuffer partitionBuffer );
+
+    void cancelled();
+
+}
@@ -1,10 +1,23 @@
 package com.github.directringcache;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 public interface PartitionBufferPool
 {
 
     PartitionBuffer getPartitionBuffer();
 
+    PartitionBuffer getPartitionBuffer( long timeout, TimeUnit timeUnit )
+        throws InterruptedException;
+
+    Future<PartitionBuffer> requestPartitionBuffer();
+
+    Future<PartitionBuffer> requestPartitionBuffer( PartitionBufferCallback callback );
+
     void freePartitionBuffer( PartitionBuffer partitionBuffer );
 
     long getAllocatedMemory();
@@ -23,6 +36,22 @@ public interface PartitionBufferPool
 
     int getFreeSliceCount();
 
+    int getSizeClassCount();
+
+    int getSliceByteSize( int sizeClass );
+
+    int getSliceCount( int sizeClass );
+
+    int getUsedSliceCount( int sizeClass );
+
+    int getFreeSliceCount( int sizeClass );
+
+    void snapshot( File file )
+        throws IOException;
+
+    List<PartitionBuffer> restore( File file )
+        throws IOException;
+
     void close();
 
 }
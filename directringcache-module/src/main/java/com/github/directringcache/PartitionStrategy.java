@@ -1,7 +1,9 @@
 package com.github.directringcache;
 
+import com.github.directringcache.impl.BuddyPooledPartition;
 import com.github.directringcache.impl.ByteBufferPooledPartition;
 import com.github.directringcache.impl.ByteBufferUnpooledPartition;
+import com.github.directringcache.impl.MappedFilePooledPartition;
 import com.github.directringcache.impl.UnsafePooledPartition;
 import com.github.directringcache.impl.UnsafeUnpooledPartition;
 import com.github.directringcache.spi.PartitionFactory;
@@ -10,8 +12,11 @@ public enum PartitionStrategy
 {
 
     POOLED_UNSAFE( UnsafePooledPartition.UNSAFE_PARTITION_FACTORY ), //
+    POOLED_UNSAFE_ARENA( UnsafePooledPartition.UNSAFE_ARENA_PARTITION_FACTORY ), //
+    POOLED_UNSAFE_BUDDY( BuddyPooledPartition.UNSAFE_BUDDY_PARTITION_FACTORY ), //
     POOLED_BYTEBUFFER_HEAP( ByteBufferPooledPartition.HEAP_BYTEBUFFER_PARTITION_FACTORY ), //
     POOLED_BYTEBUFFER_DIRECT( ByteBufferPooledPartition.DIRECT_BYTEBUFFER_PARTITION_FACTORY ), //
+    POOLED_MAPPED_FILE( MappedFilePooledPartition.MAPPED_FILE_PARTITION_FACTORY ), //
     UNPOOLED_UNSAFE( UnsafeUnpooledPartition.UNSAFE_PARTITION_FACTORY ), //
     UNPOOLED_BYTEBUFFER_HEAP( ByteBufferUnpooledPartition.HEAP_BYTEBUFFER_PARTITION_FACTORY ), //
     UNPOOLED_BYTEBUFFER_DIRECT( ByteBufferUnpooledPartition.DIRECT_BYTEBUFFER_PARTITION_FACTORY ), //
@@ -1,5 +1,9 @@
 package com.github.directringcache;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
 public interface ReadablePartitionBuffer
 {
 
@@ -15,6 +19,11 @@ public interface ReadablePartitionBuffer
 
     void readBytes( byte[] bytes, int offset, int length );
 
+    void readByteBuffer( ByteBuffer byteBuffer );
+
+    long writeTo( GatheringByteChannel channel )
+        throws IOException;
+
     char readChar();
 
     double readDouble();
@@ -35,4 +44,16 @@ public interface ReadablePartitionBuffer
 
     void readerIndex( long readerIndex );
 
+    byte getByte( long index );
+
+    void getBytes( long index, byte[] bytes );
+
+    void getBytes( long index, byte[] bytes, int offset, int length );
+
+    short getShort( long index );
+
+    int getInt( long index );
+
+    long getLong( long index );
+
 }
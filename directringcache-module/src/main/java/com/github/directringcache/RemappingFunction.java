@@ -0,0 +1,8 @@
+package com.github.directringcache;
+
+public interface RemappingFunction<K, V>
+{
+
+    V apply( K key, V value );
+
+}
@@ -0,0 +1,10 @@
+package com.github.directringcache;
+
+public interface Serializer<T>
+{
+
+    byte[] serialize( T value );
+
+    T deserialize( byte[] bytes );
+
+}
@@ -0,0 +1,74 @@
+package com.github.directringcache;
+
+import java.nio.charset.Charset;
+
+public final class Serializers
+{
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    public static final Serializer<byte[]> BYTE_ARRAY = new Serializer<byte[]>()
+    {
+
+        @Override
+        public byte[] serialize( byte[] value )
+        {
+            return value;
+        }
+
+        @Override
+        public byte[] deserialize( byte[] bytes )
+        {
+            return bytes;
+        }
+    };
+
+    public static final Serializer<String> STRING = new Serializer<String>()
+    {
+
+        @Override
+        public byte[] serialize( String value )
+        {
+            return value.getBytes( UTF_8 );
+        }
+
+        @Override
+        public String deserialize( byte[] bytes )
+        {
+            return new String( bytes, UTF_8 );
+        }
+    };
+
+    public static final Serializer<Long> LONG = new Serializer<Long>()
+    {
+
+        @Override
+        public byte[] serialize( Long value )
+        {
+            long v = value.longValue();
+            byte[] bytes = new byte[8];
+            for ( int i = 7; i >= 0; i-- )
+            {
+                bytes[i] = (byte) v;
+                v >>>= 8;
+            }
+            return bytes;
+        }
+
+        @Override
+        public Long deserialize( byte[] bytes )
+        {
+            long value = 0;
+            for ( int i = 0; i < 8; i++ )
+            {
+                value = ( value << 8 ) | ( bytes[i] & 0xFFL );
+            }
+            return Long.valueOf( value );
+        }
+    };
+
+    private Serializers()
+    {
+    }
+
+}
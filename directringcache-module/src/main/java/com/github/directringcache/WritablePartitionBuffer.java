@@ -1,12 +1,16 @@
 package com.github.directringcache;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ScatteringByteChannel;
 
 public interface WritablePartitionBuffer
 {
 
     boolean writeable();
 
+    void ensureWritable( long bytes );
+
     void writeByte( int value );
 
     void writeBytes( byte[] bytes );
@@ -21,6 +25,9 @@ public interface WritablePartitionBuffer
 
     void writePartitionBuffer( ReadablePartitionBuffer partitionBuffer, long offset, long length );
 
+    long readFrom( ScatteringByteChannel channel, long maxBytes )
+        throws IOException;
+
     void writeChar( int value );
 
     void writeDouble( double value );
@@ -37,4 +44,16 @@ public interface WritablePartitionBuffer
 
     void writerIndex( long writerIndex );
 
+    void setByte( long index, int value );
+
+    void setBytes( long index, byte[] bytes );
+
+    void setBytes( long index, byte[] bytes, int offset, int length );
+
+    void setShort( long index, short value );
+
+    void setInt( long index, int value );
+
+    void setLong( long index, long value );
+
 }
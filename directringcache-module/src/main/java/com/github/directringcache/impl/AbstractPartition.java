@@ -40,6 +40,13 @@ public abstract class AbstractPartition
         return partitionIndex;
     }
 
+    @Override
+    public long getContentionCount()
+    {
+        // Only partitions claiming slices through CAS can tell
+        return 0;
+    }
+
     @Override
     public boolean isPooled()
     {
@@ -46,6 +46,13 @@ public abstract class AbstractPartitionSlice
         return this;
     }
 
+    protected void copyThroughArray( int position, PartitionSlice source, int sourcePosition, int length )
+    {
+        byte[] temp = new byte[length];
+        source.read( sourcePosition, temp, 0, length );
+        put( position, temp, 0, length );
+    }
+
     protected abstract void free();
 
 }
@@ -35,30 +35,33 @@ public abstract class AbstractPooledPartition
         return usedSlices.size();
     }
 
+    @Override
+    public long getContentionCount()
+    {
+        return usedSlices.contention();
+    }
+
     @Override
     public PartitionSlice get()
     {
-        int retry = 0;
-        while ( retry++ < 5 )
+        int index = usedSlices.testAndSetNextNotSet( nextSlice() );
+        if ( index == -1 )
+        {
+            return null;
+        }
+        return get( index ).lock();
+    }
+
+    @Override
+    public int get( int count, PartitionSlice[] slices, int offset )
+    {
+        int[] indexes = new int[count];
+        int claimed = usedSlices.testAndSetNextNotSet( nextSlice(), count, indexes );
+        for ( int i = 0; i < claimed; i++ )
         {
-            int possibleMatch = nextSlice();
-            if ( possibleMatch == -1 )
-            {
-                return null;
-            }
-
-            synchronized ( usedSlices )
-            {
-                if ( !usedSlices.get( possibleMatch ) )
-                {
-                    if ( usedSlices.testAndSet( possibleMatch ) )
-                    {
-                        return get( possibleMatch ).lock();
-                    }
-                }
-            }
+            slices[offset + i] = get( indexes[i] ).lock();
         }
-        return null;
+        return claimed;
     }
 
     @Override
@@ -73,12 +76,11 @@ public abstract class AbstractPooledPartition
             throw new IllegalArgumentException( "Given slice cannot be handled by this PartitionBufferPool" );
         }
         AbstractPartitionSlice partitionSlice = (AbstractPartitionSlice) slice;
-        synchronized ( usedSlices )
-        {
-            slice.clear();
-            partitionSliceSelector.freePartitionSlice( this, partitionIndex, partitionSlice.unlock() );
-            usedSlices.clear( partitionSlice.index );
-        }
+        slice.clear();
+        partitionSliceSelector.freePartitionSlice( this, partitionIndex, partitionSlice.unlock() );
+
+        // Publishing the cleared bit must come last, the slice may be handed out right after
+        usedSlices.clear( partitionSlice.index );
     }
 
     @Override
@@ -88,26 +90,24 @@ public abstract class AbstractPooledPartition
         {
             return;
         }
+        freeSlices();
+    }
 
-        synchronized ( usedSlices )
+    protected void freeSlices()
+    {
+        for ( int i = 0; i < getSliceCount(); i++ )
         {
-            for ( int i = 0; i < getSliceCount(); i++ )
-            {
-                AbstractPartitionSlice partitionSlice = (AbstractPartitionSlice) get( i );
-                partitionSliceSelector.freePartitionSlice( this, partitionIndex, partitionSlice );
-                partitionSlice.free();
-            }
+            AbstractPartitionSlice partitionSlice = (AbstractPartitionSlice) get( i );
+            partitionSliceSelector.freePartitionSlice( this, partitionIndex, partitionSlice );
+            partitionSlice.free();
         }
     }
 
     protected int nextSlice()
     {
-        if ( usedSlices.isEmpty() )
-        {
-            return -1;
-        }
-
-        return usedSlices.firstNotSet();
+        // Start threads at different words so they don't all compete for the first free bit
+        int hash = (int) Thread.currentThread().getId() * 0x9E3779B9;
+        return ( hash >>> 1 ) % getSliceCount();
     }
 
     protected abstract AbstractPartitionSlice get( int index );
@@ -16,39 +16,75 @@ public abstract class AbstractUnpooledPartition
                                          PartitionSliceSelector partitionSliceSelector, boolean pooled )
     {
         super( partitionIndex, slices, sliceByteSize, partitionSliceSelector, pooled );
+
+        this.slices = slices;
     }
 
     private final AtomicInteger index = new AtomicInteger( 0 );
 
+    private final AtomicInteger usedSlices = new AtomicInteger( 0 );
+
+    private final int slices;
+
     private final Map<Integer, AbstractPartitionSlice> bufferPartitionSlices =
         new ConcurrentHashMap<Integer, AbstractPartitionSlice>();
 
     @Override
     public int available()
     {
-        return Integer.MAX_VALUE;
+        return slices - usedSlices.get();
     }
 
     @Override
     public int used()
     {
-        return bufferPartitionSlices.size();
+        return usedSlices.get();
     }
 
     @Override
     public int getSliceCount()
     {
-        return bufferPartitionSlices.size();
+        return slices;
     }
 
     @Override
     public PartitionSlice get()
     {
+        int used = usedSlices.get();
+        while ( used < slices )
+        {
+            if ( usedSlices.compareAndSet( used, used + 1 ) )
+            {
+                break;
+            }
+            used = usedSlices.get();
+        }
+        if ( used >= slices )
+        {
+            return null;
+        }
+
         AbstractPartitionSlice slice = createPartitionSlice( nextSlice(), sliceByteSize );
         bufferPartitionSlices.put( slice.index, slice );
         return slice;
     }
 
+    @Override
+    public int get( int count, PartitionSlice[] slices, int offset )
+    {
+        int claimed = 0;
+        while ( claimed < count )
+        {
+            PartitionSlice slice = get();
+            if ( slice == null )
+            {
+                break;
+            }
+            slices[offset + claimed++] = slice;
+        }
+        return claimed;
+    }
+
     @Override
     public void free( PartitionSlice slice )
     {
@@ -61,7 +97,10 @@ public abstract class AbstractUnpooledPartition
             throw new IllegalArgumentException( "Given slice cannot be handled by this PartitionBufferPool" );
         }
         AbstractPartitionSlice partitionSlice = (AbstractPartitionSlice) slice;
-        bufferPartitionSlices.remove( partitionSlice );
+        if ( bufferPartitionSlices.remove( partitionSlice.index ) != null )
+        {
+            usedSlices.decrementAndGet();
+        }
         partitionSlice.free();
     }
 
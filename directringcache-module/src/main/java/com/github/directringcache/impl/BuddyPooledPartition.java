@@ -0,0 +1,285 @@
+package com.github.directringcache.impl;
+
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.directringcache.spi.Partition;
+import com.github.directringcache.spi.PartitionFactory;
+import com.github.directringcache.spi.PartitionSlice;
+import com.github.directringcache.spi.PartitionSliceSelector;
+
+@SuppressWarnings( "restriction" )
+public class BuddyPooledPartition
+    extends AbstractPartition
+{
+
+    public static final PartitionFactory UNSAFE_BUDDY_PARTITION_FACTORY = new PartitionFactory()
+    {
+
+        @Override
+        public Partition newPartition( int partitionIndex, int sliceByteSize, int slices,
+                                       PartitionSliceSelector partitionSliceSelector )
+        {
+            return new BuddyPooledPartition( partitionIndex, slices, sliceByteSize, partitionSliceSelector );
+        }
+    };
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( BuddyPooledPartition.class );
+
+    private static final byte NO_FREE_BLOCK = -1;
+
+    private static final int NIL = -1;
+
+    private final sun.misc.Unsafe unsafe = BufferUtils.getUnsafe();
+
+    private final UnsafePartitionSlice[] slices;
+
+    private final long arenaMemoryPointer;
+
+    private final int maxOrder;
+
+    // Order of the free block starting at a slice index or NO_FREE_BLOCK if no free block starts there
+    private final byte[] freeBlockOrders;
+
+    // Free blocks of every order are kept in doubly linked lists to unlink a buddy in constant time
+    private final int[] freeListHeads;
+
+    private final int[] nextFreeBlocks;
+
+    private final int[] previousFreeBlocks;
+
+    private int used = 0;
+
+    private BuddyPooledPartition( int partitionIndex, int slices, int sliceByteSize,
+                                  PartitionSliceSelector partitionSliceSelector )
+    {
+        super( partitionIndex, slices, sliceByteSize, partitionSliceSelector, true );
+
+        this.slices = new UnsafePartitionSlice[slices];
+        this.maxOrder = 31 - Integer.numberOfLeadingZeros( slices );
+        this.freeBlockOrders = new byte[slices];
+        this.freeListHeads = new int[maxOrder + 1];
+        this.nextFreeBlocks = new int[slices];
+        this.previousFreeBlocks = new int[slices];
+
+        long allocatedLength = (long) sliceByteSize * slices;
+        if ( LOGGER.isTraceEnabled() )
+        {
+            LOGGER.trace( "malloc data: partitionIndex=" + partitionIndex + ", allocatedLength=" + allocatedLength );
+        }
+
+        int alignment = UnsafePooledPartition.DEFAULT_ARENA_ALIGNMENT;
+        arenaMemoryPointer = unsafe.allocateMemory( allocatedLength + alignment - 1 );
+        long arenaBase = ( arenaMemoryPointer + alignment - 1 ) & -alignment;
+        unsafe.setMemory( arenaBase, allocatedLength, (byte) 0 );
+
+        for ( int i = 0; i < slices; i++ )
+        {
+            this.slices[i] = new UnsafePartitionSlice( i, this, sliceByteSize, arenaBase + (long) i * sliceByteSize );
+        }
+
+        Arrays.fill( freeBlockOrders, NO_FREE_BLOCK );
+        Arrays.fill( freeListHeads, NIL );
+
+        // Seed the free lists with the largest aligned blocks, slice counts don't need to be a power of 2
+        int index = 0;
+        while ( index < slices )
+        {
+            int order = index == 0 ? maxOrder : Integer.numberOfTrailingZeros( index );
+            while ( index + ( 1 << order ) > slices )
+            {
+                order--;
+            }
+            insertFreeBlock( index, order );
+            index += 1 << order;
+        }
+    }
+
+    @Override
+    public synchronized int available()
+    {
+        return slices.length - used;
+    }
+
+    @Override
+    public synchronized int used()
+    {
+        return used;
+    }
+
+    @Override
+    public int getSliceCount()
+    {
+        return slices.length;
+    }
+
+    @Override
+    public PartitionSlice get()
+    {
+        int index;
+        synchronized ( this )
+        {
+            index = allocateBlock( 0 );
+        }
+        if ( index == NIL )
+        {
+            return null;
+        }
+        return slices[index].lock();
+    }
+
+    @Override
+    public int get( int count, PartitionSlice[] slices, int offset )
+    {
+        int[] runIndexes = new int[count];
+        int[] runOrders = new int[runIndexes.length];
+        int runs = 0;
+        int claimed = 0;
+        synchronized ( this )
+        {
+            // Serve the request with as few contiguous runs as possible, largest first
+            int order = Math.min( maxOrder, 31 - Integer.numberOfLeadingZeros( count ) );
+            while ( claimed < count && order >= 0 && used < this.slices.length )
+            {
+                if ( 1 << order > count - claimed )
+                {
+                    order--;
+                    continue;
+                }
+                int index = allocateBlock( order );
+                if ( index == NIL )
+                {
+                    order--;
+                    continue;
+                }
+                runIndexes[runs] = index;
+                runOrders[runs++] = order;
+                claimed += 1 << order;
+            }
+        }
+
+        int position = offset;
+        for ( int i = 0; i < runs; i++ )
+        {
+            int end = runIndexes[i] + ( 1 << runOrders[i] );
+            for ( int index = runIndexes[i]; index < end; index++ )
+            {
+                slices[position++] = this.slices[index].lock();
+            }
+        }
+        return claimed;
+    }
+
+    @Override
+    public void free( PartitionSlice slice )
+    {
+        if ( slice.getPartition() != this )
+        {
+            throw new IllegalArgumentException( "Given slice cannot be handled by this PartitionBufferPool" );
+        }
+        if ( !( slice instanceof AbstractPartitionSlice ) )
+        {
+            throw new IllegalArgumentException( "Given slice cannot be handled by this PartitionBufferPool" );
+        }
+        AbstractPartitionSlice partitionSlice = (AbstractPartitionSlice) slice;
+        slice.clear();
+        partitionSliceSelector.freePartitionSlice( this, partitionIndex, partitionSlice.unlock() );
+
+        synchronized ( this )
+        {
+            used--;
+
+            // Runs are handed back slice by slice, every free merges upwards as far as the buddies are free
+            int index = partitionSlice.index;
+            int order = 0;
+            while ( order < maxOrder )
+            {
+                int buddy = index ^ ( 1 << order );
+                if ( buddy >= this.slices.length || freeBlockOrders[buddy] != order )
+                {
+                    break;
+                }
+                removeFreeBlock( buddy, order );
+                index = Math.min( index, buddy );
+                order++;
+            }
+            insertFreeBlock( index, order );
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if ( !close0() )
+        {
+            return;
+        }
+
+        for ( UnsafePartitionSlice slice : slices )
+        {
+            partitionSliceSelector.freePartitionSlice( this, partitionIndex, slice );
+            slice.free();
+        }
+        unsafe.freeMemory( arenaMemoryPointer );
+    }
+
+    private int allocateBlock( int order )
+    {
+        int blockOrder = order;
+        while ( blockOrder <= maxOrder && freeListHeads[blockOrder] == NIL )
+        {
+            blockOrder++;
+        }
+        if ( blockOrder > maxOrder )
+        {
+            return NIL;
+        }
+
+        int index = freeListHeads[blockOrder];
+        removeFreeBlock( index, blockOrder );
+
+        // Split down to the requested order, the upper halves go back as free buddies
+        while ( blockOrder > order )
+        {
+            blockOrder--;
+            insertFreeBlock( index + ( 1 << blockOrder ), blockOrder );
+        }
+        used += 1 << order;
+        return index;
+    }
+
+    private void insertFreeBlock( int index, int order )
+    {
+        int head = freeListHeads[order];
+        freeBlockOrders[index] = (byte) order;
+        previousFreeBlocks[index] = NIL;
+        nextFreeBlocks[index] = head;
+        if ( head != NIL )
+        {
+            previousFreeBlocks[head] = index;
+        }
+        freeListHeads[order] = index;
+    }
+
+    private void removeFreeBlock( int index, int order )
+    {
+        int previous = previousFreeBlocks[index];
+        int next = nextFreeBlocks[index];
+        if ( previous == NIL )
+        {
+            freeListHeads[order] = next;
+        }
+        else
+        {
+            nextFreeBlocks[previous] = next;
+        }
+        if ( next != NIL )
+        {
+            previousFreeBlocks[next] = previous;
+        }
+        freeBlockOrders[index] = NO_FREE_BLOCK;
+    }
+
+}
@@ -1,8 +1,14 @@
 package com.github.directringcache.impl;
 
+import java.io.EOFException;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,6 +41,22 @@ public final class BufferUtils
 
     static final int BYTE_ARRAY_OFFSET;
 
+    private static final long BUFFER_ADDRESS_OFFSET;
+
+    private static final long BUFFER_CAPACITY_OFFSET;
+
+    private static final long BUFFER_LIMIT_OFFSET;
+
+    private static final long BUFFER_MARK_OFFSET;
+
+    private static final Class<?> DIRECT_BYTE_BUFFER_CLASS;
+
+    private static final boolean ADDRESS_WRAPPING_AVAILABLE;
+
+    static final boolean NATIVE_BIG_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+
+    static final boolean UNALIGNED_ACCESS;
+
     static
     {
         Method directByteBufferClean = null;
@@ -72,6 +94,37 @@ public final class BufferUtils
         UNSAFE = unsafe;
         UNSAFE_AVAILABLE = UNSAFE != null;
         BYTE_ARRAY_OFFSET = UNSAFE_AVAILABLE ? UNSAFE.arrayBaseOffset( byte[].class ) : -1;
+
+        long bufferAddressOffset = -1;
+        long bufferCapacityOffset = -1;
+        long bufferLimitOffset = -1;
+        long bufferMarkOffset = -1;
+        Class<?> directByteBufferClass = null;
+        try
+        {
+            if ( UNSAFE_AVAILABLE )
+            {
+                bufferAddressOffset = UNSAFE.objectFieldOffset( Buffer.class.getDeclaredField( "address" ) );
+                bufferCapacityOffset = UNSAFE.objectFieldOffset( Buffer.class.getDeclaredField( "capacity" ) );
+                bufferLimitOffset = UNSAFE.objectFieldOffset( Buffer.class.getDeclaredField( "limit" ) );
+                bufferMarkOffset = UNSAFE.objectFieldOffset( Buffer.class.getDeclaredField( "mark" ) );
+                directByteBufferClass = Class.forName( "java.nio.DirectByteBuffer" );
+            }
+        }
+        catch ( Exception e )
+        {
+            // Ignore since direct buffer internals cannot be resolved on this JVM
+        }
+        BUFFER_ADDRESS_OFFSET = bufferAddressOffset;
+        BUFFER_CAPACITY_OFFSET = bufferCapacityOffset;
+        BUFFER_LIMIT_OFFSET = bufferLimitOffset;
+        BUFFER_MARK_OFFSET = bufferMarkOffset;
+        DIRECT_BYTE_BUFFER_CLASS = directByteBufferClass;
+        ADDRESS_WRAPPING_AVAILABLE = DIRECT_BYTE_BUFFER_CLASS != null && BUFFER_MARK_OFFSET != -1;
+
+        // Only trust architectures known to handle unaligned word access, others fall back to aligned accesses
+        String arch = System.getProperty( "os.arch", "" );
+        UNALIGNED_ACCESS = arch.matches( "^(i[3-6]86|x86(_64)?|x64|amd64|aarch64)$" );
     }
 
     private BufferUtils()
@@ -88,6 +141,60 @@ public final class BufferUtils
         return UNSAFE;
     }
 
+    static boolean isDirectBufferAddressAvailable( ByteBuffer byteBuffer )
+    {
+        return BUFFER_ADDRESS_OFFSET != -1 && byteBuffer.isDirect();
+    }
+
+    static long directBufferAddress( ByteBuffer byteBuffer )
+    {
+        return UNSAFE.getLong( byteBuffer, BUFFER_ADDRESS_OFFSET );
+    }
+
+    static ByteBuffer wrapAddress( long address, int length )
+    {
+        if ( !ADDRESS_WRAPPING_AVAILABLE )
+        {
+            throw new UnsupportedOperationException( "Memory addresses cannot be wrapped on this JVM" );
+        }
+
+        try
+        {
+            // The buffer neither owns nor cleans the memory, it is only valid as long as the slice is
+            ByteBuffer byteBuffer = (ByteBuffer) UNSAFE.allocateInstance( DIRECT_BYTE_BUFFER_CLASS );
+            UNSAFE.putLong( byteBuffer, BUFFER_ADDRESS_OFFSET, address );
+            UNSAFE.putInt( byteBuffer, BUFFER_CAPACITY_OFFSET, length );
+            UNSAFE.putInt( byteBuffer, BUFFER_LIMIT_OFFSET, length );
+            UNSAFE.putInt( byteBuffer, BUFFER_MARK_OFFSET, -1 );
+            return byteBuffer.order( ByteOrder.BIG_ENDIAN );
+        }
+        catch ( InstantiationException e )
+        {
+            throw new UnsupportedOperationException( "Memory addresses cannot be wrapped on this JVM", e );
+        }
+    }
+
+    static void writeFully( GatheringByteChannel channel, ByteBuffer[] byteBuffers )
+        throws IOException
+    {
+        while ( byteBuffers.length > 0 && byteBuffers[byteBuffers.length - 1].hasRemaining() )
+        {
+            channel.write( byteBuffers );
+        }
+    }
+
+    static void readFully( ScatteringByteChannel channel, ByteBuffer[] byteBuffers )
+        throws IOException
+    {
+        while ( byteBuffers.length > 0 && byteBuffers[byteBuffers.length - 1].hasRemaining() )
+        {
+            if ( channel.read( byteBuffers ) == -1 )
+            {
+                throw new EOFException( "Channel reached end of stream" );
+            }
+        }
+    }
+
     static void cleanByteBuffer( ByteBuffer byteBuffer )
     {
         if ( !byteBuffer.isDirect() || !CLEANER_AVAILABLE )
@@ -97,8 +204,12 @@ public final class BufferUtils
 
         try
         {
+            // Slices and duplicates (e.g. of mapped files) don't own a cleaner
             Object cleaner = DIRECT_BYTE_BUFFER_CLEANER.invoke( byteBuffer );
-            DIRECT_BYTE_BUFFER_CLEAN.invoke( cleaner );
+            if ( cleaner != null )
+            {
+                DIRECT_BYTE_BUFFER_CLEAN.invoke( cleaner );
+            }
         }
         catch ( Exception e )
         {
@@ -106,124 +217,124 @@ public final class BufferUtils
         }
     }
 
-    static void putShort( short value, PartitionBuffer partitionBuffer, boolean bigEndian )
+    static void putShort( short value, PartitionBuffer partitionBuffer, long index, boolean bigEndian )
     {
         if ( bigEndian )
         {
-            partitionBuffer.writeByte( (byte) ( value >> 8 ) );
-            partitionBuffer.writeByte( (byte) ( value >> 0 ) );
+            partitionBuffer.setByte( index, (byte) ( value >> 8 ) );
+            partitionBuffer.setByte( index + 1, (byte) ( value >> 0 ) );
         }
         else
         {
-            partitionBuffer.writeByte( (byte) ( value >> 0 ) );
-            partitionBuffer.writeByte( (byte) ( value >> 8 ) );
+            partitionBuffer.setByte( index, (byte) ( value >> 0 ) );
+            partitionBuffer.setByte( index + 1, (byte) ( value >> 8 ) );
         }
     }
 
-    static short getShort( PartitionBuffer partitionBuffer, boolean bigEndian )
+    static short getShort( PartitionBuffer partitionBuffer, long index, boolean bigEndian )
     {
         if ( bigEndian )
         {
-            byte b1 = partitionBuffer.readByte();
-            byte b0 = partitionBuffer.readByte();
+            byte b1 = partitionBuffer.getByte( index );
+            byte b0 = partitionBuffer.getByte( index + 1 );
             return buildShort( b1, b0 );
         }
         else
         {
-            byte b0 = partitionBuffer.readByte();
-            byte b1 = partitionBuffer.readByte();
+            byte b0 = partitionBuffer.getByte( index );
+            byte b1 = partitionBuffer.getByte( index + 1 );
             return buildShort( b1, b0 );
         }
     }
 
-    static void putInt( int value, PartitionBuffer partitionBuffer, boolean bigEndian )
+    static void putInt( int value, PartitionBuffer partitionBuffer, long index, boolean bigEndian )
     {
         if ( bigEndian )
         {
-            partitionBuffer.writeByte( (byte) ( value >>> 24 ) );
-            partitionBuffer.writeByte( (byte) ( value >>> 16 ) );
-            partitionBuffer.writeByte( (byte) ( value >>> 8 ) );
-            partitionBuffer.writeByte( (byte) ( value >>> 0 ) );
+            partitionBuffer.setByte( index, (byte) ( value >>> 24 ) );
+            partitionBuffer.setByte( index + 1, (byte) ( value >>> 16 ) );
+            partitionBuffer.setByte( index + 2, (byte) ( value >>> 8 ) );
+            partitionBuffer.setByte( index + 3, (byte) ( value >>> 0 ) );
         }
         else
         {
-            partitionBuffer.writeByte( (byte) ( value >>> 0 ) );
-            partitionBuffer.writeByte( (byte) ( value >>> 8 ) );
-            partitionBuffer.writeByte( (byte) ( value >>> 16 ) );
-            partitionBuffer.writeByte( (byte) ( value >>> 24 ) );
+            partitionBuffer.setByte( index, (byte) ( value >>> 0 ) );
+            partitionBuffer.setByte( index + 1, (byte) ( value >>> 8 ) );
+            partitionBuffer.setByte( index + 2, (byte) ( value >>> 16 ) );
+            partitionBuffer.setByte( index + 3, (byte) ( value >>> 24 ) );
         }
     }
 
-    static int getInt( PartitionBuffer partitionBuffer, boolean bigEndian )
+    static int getInt( PartitionBuffer partitionBuffer, long index, boolean bigEndian )
     {
         if ( bigEndian )
         {
-            byte b3 = partitionBuffer.readByte();
-            byte b2 = partitionBuffer.readByte();
-            byte b1 = partitionBuffer.readByte();
-            byte b0 = partitionBuffer.readByte();
+            byte b3 = partitionBuffer.getByte( index );
+            byte b2 = partitionBuffer.getByte( index + 1 );
+            byte b1 = partitionBuffer.getByte( index + 2 );
+            byte b0 = partitionBuffer.getByte( index + 3 );
             return buildInt( b3, b2, b1, b0 );
         }
         else
         {
-            byte b0 = partitionBuffer.readByte();
-            byte b1 = partitionBuffer.readByte();
-            byte b2 = partitionBuffer.readByte();
-            byte b3 = partitionBuffer.readByte();
+            byte b0 = partitionBuffer.getByte( index );
+            byte b1 = partitionBuffer.getByte( index + 1 );
+            byte b2 = partitionBuffer.getByte( index + 2 );
+            byte b3 = partitionBuffer.getByte( index + 3 );
             return buildInt( b3, b2, b1, b0 );
         }
     }
 
-    static void putLong( long value, PartitionBuffer partitionBuffer, boolean bigEndian )
+    static void putLong( long value, PartitionBuffer partitionBuffer, long index, boolean bigEndian )
     {
         if ( bigEndian )
         {
-            partitionBuffer.writeByte( (byte) ( value >> 56 ) );
-            partitionBuffer.writeByte( (byte) ( value >> 48 ) );
-            partitionBuffer.writeByte( (byte) ( value >> 40 ) );
-            partitionBuffer.writeByte( (byte) ( value >> 32 ) );
-            partitionBuffer.writeByte( (byte) ( value >> 24 ) );
-            partitionBuffer.writeByte( (byte) ( value >> 16 ) );
-            partitionBuffer.writeByte( (byte) ( value >> 8 ) );
-            partitionBuffer.writeByte( (byte) ( value >> 0 ) );
+            partitionBuffer.setByte( index, (byte) ( value >> 56 ) );
+            partitionBuffer.setByte( index + 1, (byte) ( value >> 48 ) );
+            partitionBuffer.setByte( index + 2, (byte) ( value >> 40 ) );
+            partitionBuffer.setByte( index + 3, (byte) ( value >> 32 ) );
+            partitionBuffer.setByte( index + 4, (byte) ( value >> 24 ) );
+            partitionBuffer.setByte( index + 5, (byte) ( value >> 16 ) );
+            partitionBuffer.setByte( index + 6, (byte) ( value >> 8 ) );
+            partitionBuffer.setByte( index + 7, (byte) ( value >> 0 ) );
         }
         else
         {
-            partitionBuffer.writeByte( (byte) ( value >> 0 ) );
-            partitionBuffer.writeByte( (byte) ( value >> 8 ) );
-            partitionBuffer.writeByte( (byte) ( value >> 16 ) );
-            partitionBuffer.writeByte( (byte) ( value >> 24 ) );
-            partitionBuffer.writeByte( (byte) ( value >> 32 ) );
-            partitionBuffer.writeByte( (byte) ( value >> 40 ) );
-            partitionBuffer.writeByte( (byte) ( value >> 48 ) );
-            partitionBuffer.writeByte( (byte) ( value >> 56 ) );
+            partitionBuffer.setByte( index, (byte) ( value >> 0 ) );
+            partitionBuffer.setByte( index + 1, (byte) ( value >> 8 ) );
+            partitionBuffer.setByte( index + 2, (byte) ( value >> 16 ) );
+            partitionBuffer.setByte( index + 3, (byte) ( value >> 24 ) );
+            partitionBuffer.setByte( index + 4, (byte) ( value >> 32 ) );
+            partitionBuffer.setByte( index + 5, (byte) ( value >> 40 ) );
+            partitionBuffer.setByte( index + 6, (byte) ( value >> 48 ) );
+            partitionBuffer.setByte( index + 7, (byte) ( value >> 56 ) );
         }
     }
 
-    static long getLong( PartitionBuffer partitionBuffer, boolean bigEndian )
+    static long getLong( PartitionBuffer partitionBuffer, long index, boolean bigEndian )
     {
         if ( bigEndian )
         {
-            byte b7 = partitionBuffer.readByte();
-            byte b6 = partitionBuffer.readByte();
-            byte b5 = partitionBuffer.readByte();
-            byte b4 = partitionBuffer.readByte();
-            byte b3 = partitionBuffer.readByte();
-            byte b2 = partitionBuffer.readByte();
-            byte b1 = partitionBuffer.readByte();
-            byte b0 = partitionBuffer.readByte();
+            byte b7 = partitionBuffer.getByte( index );
+            byte b6 = partitionBuffer.getByte( index + 1 );
+            byte b5 = partitionBuffer.getByte( index + 2 );
+            byte b4 = partitionBuffer.getByte( index + 3 );
+            byte b3 = partitionBuffer.getByte( index + 4 );
+            byte b2 = partitionBuffer.getByte( index + 5 );
+            byte b1 = partitionBuffer.getByte( index + 6 );
+            byte b0 = partitionBuffer.getByte( index + 7 );
             return buildLong( b7, b6, b5, b4, b3, b2, b1, b0 );
         }
         else
         {
-            byte b0 = partitionBuffer.readByte();
-            byte b1 = partitionBuffer.readByte();
-            byte b2 = partitionBuffer.readByte();
-            byte b3 = partitionBuffer.readByte();
-            byte b4 = partitionBuffer.readByte();
-            byte b5 = partitionBuffer.readByte();
-            byte b6 = partitionBuffer.readByte();
-            byte b7 = partitionBuffer.readByte();
+            byte b0 = partitionBuffer.getByte( index );
+            byte b1 = partitionBuffer.getByte( index + 1 );
+            byte b2 = partitionBuffer.getByte( index + 2 );
+            byte b3 = partitionBuffer.getByte( index + 3 );
+            byte b4 = partitionBuffer.getByte( index + 4 );
+            byte b5 = partitionBuffer.getByte( index + 5 );
+            byte b6 = partitionBuffer.getByte( index + 6 );
+            byte b7 = partitionBuffer.getByte( index + 7 );
             return buildLong( b7, b6, b5, b4, b3, b2, b1, b0 );
         }
     }
@@ -305,8 +416,9 @@ public final class BufferUtils
 
     private static long buildLong( byte b7, byte b6, byte b5, byte b4, byte b3, byte b2, byte b1, byte b0 )
     {
-        return ( ( ( ( b7 & 0xFF ) << 56 ) | ( ( b6 & 0xFF ) << 48 ) | ( ( b5 & 0xFF ) << 40 ) | ( ( b4 & 0xFF ) << 32 )
-            | ( ( b3 & 0xFF ) << 24 ) | ( ( b2 & 0xFF ) << 16 ) | ( ( b1 & 0xFF ) << 8 ) | ( ( b0 & 0xFF ) << 0 ) ) );
+        return ( ( ( ( b7 & 0xFFL ) << 56 ) | ( ( b6 & 0xFFL ) << 48 ) | ( ( b5 & 0xFFL ) << 40 )
+            | ( ( b4 & 0xFFL ) << 32 ) | ( ( b3 & 0xFFL ) << 24 ) | ( ( b2 & 0xFFL ) << 16 ) | ( ( b1 & 0xFFL ) << 8 )
+            | ( ( b0 & 0xFFL ) << 0 ) ) );
     }
 
 }
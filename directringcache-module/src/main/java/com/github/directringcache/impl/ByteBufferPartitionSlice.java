@@ -4,6 +4,7 @@ import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.github.directringcache.spi.Partition;
+import com.github.directringcache.spi.PartitionSlice;
 
 class ByteBufferPartitionSlice
     extends AbstractPartitionSlice
@@ -53,10 +54,91 @@ class ByteBufferPartitionSlice
     @Override
     public void put( byte[] array, int offset, int length )
     {
-        for ( int i = 0; i < length; i++ )
+        put( writerIndex, array, offset, length );
+        writerIndex += length;
+    }
+
+    @Override
+    public void put( int position, byte[] array, int offset, int length )
+    {
+        if ( byteBuffer.hasArray() )
         {
-            put( writerIndex++, array[offset + i] );
+            if ( position + length > sliceByteSize )
+            {
+                throw new IndexOutOfBoundsException( "Writing the array exhausted the available size" );
+            }
+            System.arraycopy( array, offset, byteBuffer.array(), byteBuffer.arrayOffset() + position, length );
+            return;
         }
+
+        ByteBuffer targetBuffer = byteBuffer.duplicate();
+        targetBuffer.position( position );
+        targetBuffer.put( array, offset, length );
+    }
+
+    @Override
+    public void put( int position, PartitionSlice source, int sourcePosition, int length )
+    {
+        if ( !( source instanceof ByteBufferPartitionSlice ) )
+        {
+            copyThroughArray( position, source, sourcePosition, length );
+            return;
+        }
+
+        ByteBuffer sourceBuffer = ( (ByteBufferPartitionSlice) source ).byteBuffer.duplicate();
+        sourceBuffer.limit( sourcePosition + length );
+        sourceBuffer.position( sourcePosition );
+
+        ByteBuffer targetBuffer = byteBuffer.duplicate();
+        targetBuffer.position( position );
+        targetBuffer.put( sourceBuffer );
+    }
+
+    @Override
+    public void put( int position, ByteBuffer source )
+    {
+        ByteBuffer targetBuffer = byteBuffer.duplicate();
+        targetBuffer.position( position );
+        targetBuffer.put( source );
+    }
+
+    @Override
+    public void putShort( short value )
+    {
+        putShort( writerIndex, value );
+        writerIndex += 2;
+    }
+
+    @Override
+    public void putShort( int position, short value )
+    {
+        byteBuffer.putShort( position, value );
+    }
+
+    @Override
+    public void putInt( int value )
+    {
+        putInt( writerIndex, value );
+        writerIndex += 4;
+    }
+
+    @Override
+    public void putInt( int position, int value )
+    {
+        byteBuffer.putInt( position, value );
+    }
+
+    @Override
+    public void putLong( long value )
+    {
+        putLong( writerIndex, value );
+        writerIndex += 8;
+    }
+
+    @Override
+    public void putLong( int position, long value )
+    {
+        byteBuffer.putLong( position, value );
     }
 
     @Override
@@ -74,10 +156,86 @@ class ByteBufferPartitionSlice
     @Override
     public void read( byte[] array, int offset, int length )
     {
-        for ( int i = 0; i < length; i++ )
+        read( readerIndex, array, offset, length );
+        readerIndex += length;
+    }
+
+    @Override
+    public void read( int position, byte[] array, int offset, int length )
+    {
+        if ( byteBuffer.hasArray() )
         {
-            array[offset + i] = read( readerIndex++ );
+            if ( position + length > sliceByteSize )
+            {
+                throw new IndexOutOfBoundsException( "Reading the array exhausted the available size" );
+            }
+            System.arraycopy( byteBuffer.array(), byteBuffer.arrayOffset() + position, array, offset, length );
+            return;
         }
+
+        ByteBuffer sourceBuffer = byteBuffer.duplicate();
+        sourceBuffer.position( position );
+        sourceBuffer.get( array, offset, length );
+    }
+
+    @Override
+    public void read( int position, ByteBuffer target )
+    {
+        ByteBuffer sourceBuffer = byteBuffer.duplicate();
+        sourceBuffer.limit( position + target.remaining() );
+        sourceBuffer.position( position );
+        target.put( sourceBuffer );
+    }
+
+    @Override
+    public ByteBuffer byteBuffer( int position, int length )
+    {
+        ByteBuffer view = byteBuffer.duplicate();
+        view.limit( position + length );
+        view.position( position );
+        return view.slice();
+    }
+
+    @Override
+    public short getShort()
+    {
+        short value = getShort( readerIndex );
+        readerIndex += 2;
+        return value;
+    }
+
+    @Override
+    public short getShort( int position )
+    {
+        return byteBuffer.getShort( position );
+    }
+
+    @Override
+    public int getInt()
+    {
+        int value = getInt( readerIndex );
+        readerIndex += 4;
+        return value;
+    }
+
+    @Override
+    public int getInt( int position )
+    {
+        return byteBuffer.getInt( position );
+    }
+
+    @Override
+    public long getLong()
+    {
+        long value = getLong( readerIndex );
+        readerIndex += 8;
+        return value;
+    }
+
+    @Override
+    public long getLong( int position )
+    {
+        return byteBuffer.getLong( position );
     }
 
     @Override
@@ -133,7 +291,7 @@ class ByteBufferPartitionSlice
     @Override
     protected void free()
     {
-        if ( freed.compareAndSet( false, true ) )
+        if ( !freed.compareAndSet( false, true ) )
         {
             return;
         }
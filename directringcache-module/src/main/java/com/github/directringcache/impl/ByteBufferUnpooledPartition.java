@@ -48,7 +48,7 @@ public class ByteBufferUnpooledPartition
     {
         ByteBuffer buffer =
             directMemory ? ByteBuffer.allocateDirect( sliceByteSize ) : ByteBuffer.allocate( sliceByteSize );
-        return new ByteBufferPartitionSlice( buffer, nextSlice(), this, sliceByteSize );
+        return new ByteBufferPartitionSlice( buffer, index, this, sliceByteSize );
     }
 
 }
@@ -1,5 +1,7 @@
 package com.github.directringcache.impl;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicLongArray;
 
 public class FixedLengthBitSet
@@ -9,10 +11,36 @@ public class FixedLengthBitSet
 
     private final AtomicLongArray words;
 
+    // levels[0] are the words, a bit on level n marks the corresponding word on level n - 1 as full
+    private final AtomicLongArray[] levels;
+
+    private final int[] levelBits;
+
+    private final AtomicInteger cardinality = new AtomicInteger( 0 );
+
+    // Claims lost to other threads, only written on the contended path
+    private final AtomicLong contention = new AtomicLong( 0 );
+
     public FixedLengthBitSet( int bits )
     {
         this.bits = bits;
-        this.words = new AtomicLongArray( bits % 64 == 0 ? bits / 64 : bits / 64 + 1 );
+
+        int levelCount = 1;
+        for ( int levelSize = bits; levelSize > 64; levelSize = wordCount( levelSize ) )
+        {
+            levelCount++;
+        }
+
+        this.levels = new AtomicLongArray[levelCount];
+        this.levelBits = new int[levelCount];
+        int levelSize = bits;
+        for ( int level = 0; level < levelCount; level++ )
+        {
+            levels[level] = new AtomicLongArray( wordCount( levelSize ) );
+            levelBits[level] = levelSize;
+            levelSize = wordCount( levelSize );
+        }
+        this.words = levels[0];
     }
 
     public void flip( int bitIndex )
@@ -21,12 +49,20 @@ public class FixedLengthBitSet
         int index = index( bitIndex );
         long mask = 1L << bitIndex;
         long value = words.get( index );
-        long newValue = value ^ mask;
-        while ( !words.compareAndSet( index, value, newValue ) )
+        while ( !words.compareAndSet( index, value, value ^ mask ) )
         {
             value = words.get( index );
-            newValue = value ^ mask;
         }
+
+        if ( ( value & mask ) == 0 )
+        {
+            cardinality.incrementAndGet();
+        }
+        else
+        {
+            cardinality.decrementAndGet();
+        }
+        updated( 0, index, value, value ^ mask );
     }
 
     public boolean get( int bitIndex )
@@ -43,17 +79,96 @@ public class FixedLengthBitSet
         int index = index( bitIndex );
         long mask = 1L << bitIndex;
         long value = words.get( index );
-        long newValue = value | mask;
-        while ( !words.compareAndSet( index, value, newValue ) )
+        while ( ( value & mask ) == 0 )
         {
+            if ( words.compareAndSet( index, value, value | mask ) )
+            {
+                cardinality.incrementAndGet();
+                updated( 0, index, value, value | mask );
+                return true;
+            }
             value = words.get( index );
-            if ( ( value & mask ) != 0 )
+        }
+        return false;
+    }
+
+    public int testAndSetNextNotSet( int bitIndex )
+    {
+        BufferUtils.rangeCheck( bitIndex, 0, bits, "bitIndex" );
+
+        // Fill words from their lowest bit to keep allocations compact
+        bitIndex = index( bitIndex ) * 64;
+        int index = bitIndex;
+        while ( cardinality() < bits )
+        {
+            index = nextNotSet( index );
+            if ( index == -1 )
+            {
+                // Summary flags are hints, a concurrently refilled word may still be marked full
+                index = scanNotSet();
+                if ( index == -1 )
+                {
+                    index = bitIndex;
+                    continue;
+                }
+            }
+
+            if ( testAndSet( index ) )
             {
-                return false;
+                return index;
             }
-            newValue = value | mask;
+            contention.incrementAndGet();
         }
-        return true;
+        return -1;
+    }
+
+    public int testAndSetNextNotSet( int bitIndex, int count, int[] bitIndexes )
+    {
+        BufferUtils.rangeCheck( bitIndex, 0, bits, "bitIndex" );
+
+        bitIndex = index( bitIndex ) * 64;
+        int claimed = 0;
+        int nextIndex = bitIndex;
+        while ( claimed < count && cardinality() < bits )
+        {
+            nextIndex = nextNotSet( nextIndex );
+            if ( nextIndex == -1 )
+            {
+                nextIndex = scanNotSet();
+                if ( nextIndex == -1 )
+                {
+                    nextIndex = bitIndex;
+                    continue;
+                }
+            }
+
+            // Claim as many bits of the word as needed with a single CAS
+            int index = index( nextIndex );
+            long value = words.get( index );
+            long notSet = ~value & validBits( 0, index );
+            long mask = 0;
+            for ( int i = claimed; i < count && notSet != 0; i++ )
+            {
+                long bit = Long.lowestOneBit( notSet );
+                mask |= bit;
+                notSet &= ~bit;
+            }
+
+            if ( mask != 0 && words.compareAndSet( index, value, value | mask ) )
+            {
+                cardinality.addAndGet( Long.bitCount( mask ) );
+                updated( 0, index, value, value | mask );
+                for ( ; mask != 0; mask &= mask - 1 )
+                {
+                    bitIndexes[claimed++] = index * 64 + Long.numberOfTrailingZeros( mask );
+                }
+            }
+            else if ( mask != 0 )
+            {
+                contention.incrementAndGet();
+            }
+        }
+        return claimed;
     }
 
     public void set( int bitIndex, boolean value )
@@ -74,20 +189,28 @@ public class FixedLengthBitSet
         int index = index( bitIndex );
         long mask = 1L << bitIndex;
         long value = words.get( index );
-        long newValue = value & ~mask;
-        while ( !words.compareAndSet( index, value, newValue ) )
+        while ( ( value & mask ) != 0 )
         {
+            if ( words.compareAndSet( index, value, value & ~mask ) )
+            {
+                cardinality.decrementAndGet();
+                updated( 0, index, value, value & ~mask );
+                return;
+            }
             value = words.get( index );
-            newValue = value & ~mask;
         }
     }
 
     public void reset()
     {
-        for ( int i = 0; i < words.length(); i++ )
+        for ( AtomicLongArray level : levels )
         {
-            words.set( i, 0 );
+            for ( int i = 0; i < level.length(); i++ )
+            {
+                level.set( i, 0 );
+            }
         }
+        cardinality.set( 0 );
     }
 
     public int size()
@@ -102,12 +225,12 @@ public class FixedLengthBitSet
 
     public int cardinality()
     {
-        int count = 0;
-        for ( int i = 0; i < words.length(); i++ )
-        {
-            count += Long.bitCount( words.get( i ) );
-        }
-        return count;
+        return cardinality.get();
+    }
+
+    public long contention()
+    {
+        return contention.get();
     }
 
     public int firstNotSet()
@@ -118,32 +241,12 @@ public class FixedLengthBitSet
     public int nextNotSet( int bitIndex )
     {
         BufferUtils.rangeCheck( bitIndex, 0, bits, "bitIndex" );
-        int index = index( bitIndex );
-        for ( int i = index; i < words.length(); i++ )
-        {
-            if ( Long.bitCount( words.get( i ) ) == 64 )
-            {
-                continue;
-            }
-
-            for ( int bit = 0; bit < 64; bit++ )
-            {
-                if ( i * 64 + bit >= bits )
-                    break;
-
-                if ( ( words.get( i ) & ( 1L << bit ) ) == 0 )
-                {
-                    return i * 64 + bit;
-                }
-            }
-        }
-
-        if ( bitIndex != 0 )
+        int index = nextNotSet( 0, bitIndex );
+        if ( index == -1 && bitIndex != 0 )
         {
-            return firstNotSet();
+            return nextNotSet( 0, 0 );
         }
-
-        return -1;
+        return index;
     }
 
     public int firstSet()
@@ -153,23 +256,21 @@ public class FixedLengthBitSet
 
     public int nextSet( int bitIndex )
     {
+        BufferUtils.rangeCheck( bitIndex, 0, bits, "bitIndex" );
         int index = index( bitIndex );
-        for ( int i = index; i < words.length(); i++ )
+        long set = words.get( index ) & ( -1L << bitIndex );
+        while ( true )
         {
-            if ( Long.bitCount( words.get( i ) ) == 64 )
+            if ( set != 0 )
             {
-                continue;
+                return index * 64 + Long.numberOfTrailingZeros( set );
             }
-
-            for ( int bit = 0; bit < 64; bit++ )
+            if ( ++index == words.length() )
             {
-                if ( ( words.get( i ) & ( 1L << bit ) ) == 1 )
-                {
-                    return i * 64 + bit;
-                }
+                return -1;
             }
+            set = words.get( index );
         }
-        return -1;
     }
 
     public void and( FixedLengthBitSet bitSet )
@@ -182,13 +283,12 @@ public class FixedLengthBitSet
         for ( int i = 0; i < bitSet.words.length(); i++ )
         {
             long value = words.get( i );
-            long newValue = value & bitSet.words.get( i );
-            while ( words.compareAndSet( i, value, newValue ) )
+            while ( !words.compareAndSet( i, value, value & bitSet.words.get( i ) ) )
             {
                 value = words.get( i );
-                newValue = value & bitSet.words.get( i );
             }
         }
+        rebuildSummary();
     }
 
     public void andNot( FixedLengthBitSet bitSet )
@@ -201,13 +301,12 @@ public class FixedLengthBitSet
         for ( int i = 0; i < bitSet.words.length(); i++ )
         {
             long value = words.get( i );
-            long newValue = value & ~bitSet.words.get( i );
-            while ( words.compareAndSet( i, value, newValue ) )
+            while ( !words.compareAndSet( i, value, value & ~bitSet.words.get( i ) ) )
             {
                 value = words.get( i );
-                newValue = value & ~bitSet.words.get( i );
             }
         }
+        rebuildSummary();
     }
 
     public void or( FixedLengthBitSet bitSet )
@@ -220,13 +319,12 @@ public class FixedLengthBitSet
         for ( int i = 0; i < bitSet.words.length(); i++ )
         {
             long value = words.get( i );
-            long newValue = value | bitSet.words.get( i );
-            while ( words.compareAndSet( i, value, newValue ) )
+            while ( !words.compareAndSet( i, value, ( value | bitSet.words.get( i ) ) & validBits( 0, i ) ) )
             {
                 value = words.get( i );
-                newValue = value | bitSet.words.get( i );
             }
         }
+        rebuildSummary();
     }
 
     public void xor( FixedLengthBitSet bitSet )
@@ -239,13 +337,12 @@ public class FixedLengthBitSet
         for ( int i = 0; i < bitSet.words.length(); i++ )
         {
             long value = words.get( i );
-            long newValue = value ^ bitSet.words.get( i );
-            while ( words.compareAndSet( i, value, newValue ) )
+            while ( !words.compareAndSet( i, value, ( value ^ bitSet.words.get( i ) ) & validBits( 0, i ) ) )
             {
                 value = words.get( i );
-                newValue = value ^ bitSet.words.get( i );
             }
         }
+        rebuildSummary();
     }
 
     @Override
@@ -290,4 +387,146 @@ public class FixedLengthBitSet
         return bitIndex / 64;
     }
 
+    private int nextNotSet( int level, int bitIndex )
+    {
+        AtomicLongArray levelWords = levels[level];
+        while ( bitIndex < levelBits[level] )
+        {
+            int index = index( bitIndex );
+            long notSet = ~levelWords.get( index ) & validBits( level, index ) & ( -1L << bitIndex );
+            if ( notSet != 0 )
+            {
+                return index * 64 + Long.numberOfTrailingZeros( notSet );
+            }
+            if ( level + 1 == levels.length )
+            {
+                return -1;
+            }
+
+            // Let the next level skip over all full words
+            int nextIndex = index + 1 < levelBits[level + 1] ? nextNotSet( level + 1, index + 1 ) : -1;
+            if ( nextIndex == -1 )
+            {
+                return -1;
+            }
+            bitIndex = nextIndex * 64;
+        }
+        return -1;
+    }
+
+    private int scanNotSet()
+    {
+        for ( int i = 0; i < words.length(); i++ )
+        {
+            long notSet = ~words.get( i ) & validBits( 0, i );
+            if ( notSet != 0 )
+            {
+                return i * 64 + Long.numberOfTrailingZeros( notSet );
+            }
+        }
+        return -1;
+    }
+
+    private void updated( int level, int index, long oldValue, long newValue )
+    {
+        long full = validBits( level, index );
+        if ( newValue == full && oldValue != full )
+        {
+            markFull( level + 1, index );
+        }
+        else if ( oldValue == full && newValue != full )
+        {
+            markNotFull( level + 1, index );
+        }
+    }
+
+    private void markFull( int level, int bitIndex )
+    {
+        if ( level == levels.length )
+        {
+            return;
+        }
+
+        AtomicLongArray levelWords = levels[level];
+        int index = index( bitIndex );
+        long mask = 1L << bitIndex;
+        long value = levelWords.get( index );
+        while ( ( value & mask ) == 0 )
+        {
+            if ( levelWords.compareAndSet( index, value, value | mask ) )
+            {
+                updated( level, index, value, value | mask );
+                break;
+            }
+            value = levelWords.get( index );
+        }
+
+        // A concurrent clear may have raced the flag, never leave a word with free bits marked as full
+        if ( levels[level - 1].get( bitIndex ) != validBits( level - 1, bitIndex ) )
+        {
+            markNotFull( level, bitIndex );
+        }
+    }
+
+    private void markNotFull( int level, int bitIndex )
+    {
+        if ( level == levels.length )
+        {
+            return;
+        }
+
+        AtomicLongArray levelWords = levels[level];
+        int index = index( bitIndex );
+        long mask = 1L << bitIndex;
+        long value = levelWords.get( index );
+        while ( ( value & mask ) != 0 )
+        {
+            if ( levelWords.compareAndSet( index, value, value & ~mask ) )
+            {
+                updated( level, index, value, value & ~mask );
+                return;
+            }
+            value = levelWords.get( index );
+        }
+    }
+
+    private void rebuildSummary()
+    {
+        int count = 0;
+        for ( int i = 0; i < words.length(); i++ )
+        {
+            count += Long.bitCount( words.get( i ) );
+        }
+        cardinality.set( count );
+
+        for ( int level = 1; level < levels.length; level++ )
+        {
+            AtomicLongArray levelWords = levels[level];
+            for ( int i = 0; i < levelWords.length(); i++ )
+            {
+                long value = 0;
+                for ( int bit = 0; bit < 64 && i * 64 + bit < levelBits[level]; bit++ )
+                {
+                    int childIndex = i * 64 + bit;
+                    if ( levels[level - 1].get( childIndex ) == validBits( level - 1, childIndex ) )
+                    {
+                        value |= 1L << bit;
+                    }
+                }
+                levelWords.set( i, value );
+            }
+        }
+    }
+
+    private long validBits( int level, int index )
+    {
+        int remaining = levelBits[level] - index * 64;
+        return remaining >= 64 ? -1L : ( 1L << remaining ) - 1;
+    }
+
+    private static int wordCount( int bits )
+    {
+        return bits % 64 == 0 ? bits / 64 : bits / 64 + 1;
+    }
+
 }
@@ -0,0 +1,183 @@
+package com.github.directringcache.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import com.github.directringcache.spi.Partition;
+import com.github.directringcache.spi.PartitionFactory;
+import com.github.directringcache.spi.PartitionSliceSelector;
+
+public class MappedFilePooledPartition
+    extends AbstractPooledPartition
+{
+
+    public static final PartitionFactory MAPPED_FILE_PARTITION_FACTORY = new PartitionFactory()
+    {
+
+        @Override
+        public Partition newPartition( int partitionIndex, int sliceByteSize, int slices,
+                                       PartitionSliceSelector partitionSliceSelector )
+        {
+            return new MappedFilePooledPartition( partitionIndex, slices, sliceByteSize, null, partitionSliceSelector );
+        }
+    };
+
+    public static PartitionFactory mappedFilePartitionFactory( final File directory )
+    {
+        if ( !directory.isDirectory() && !directory.mkdirs() )
+        {
+            throw new IllegalArgumentException( "Directory " + directory + " does not exist and cannot be created" );
+        }
+
+        return new PartitionFactory()
+        {
+
+            @Override
+            public Partition newPartition( int partitionIndex, int sliceByteSize, int slices,
+                                           PartitionSliceSelector partitionSliceSelector )
+            {
+                return new MappedFilePooledPartition( partitionIndex, slices, sliceByteSize, directory,
+                                                      partitionSliceSelector );
+            }
+        };
+    }
+
+    // Shared by all temporary partitions of the JVM, guarded by the class lock
+    private static File temporaryDirectory;
+
+    private final ByteBufferPartitionSlice[] slices;
+
+    private final File file;
+
+    private final boolean temporary;
+
+    private final RandomAccessFile randomAccessFile;
+
+    private final MappedByteBuffer mappedByteBuffer;
+
+    private MappedFilePooledPartition( int partitionIndex, int slices, int sliceByteSize, File directory,
+                                       PartitionSliceSelector partitionSliceSelector )
+    {
+        super( partitionIndex, slices, sliceByteSize, partitionSliceSelector, true );
+
+        this.slices = new ByteBufferPartitionSlice[slices];
+        this.temporary = directory == null;
+
+        long partitionByteSize = (long) slices * sliceByteSize;
+        File file = null;
+        RandomAccessFile randomAccessFile = null;
+        try
+        {
+            if ( temporary )
+            {
+                file = File.createTempFile( "partition-" + sliceByteSize + "-" + partitionIndex + "-", ".bin",
+                                            temporaryDirectory() );
+            }
+            else
+            {
+                // Size classes of a pool count their partition indexes independently, the slice size tells them apart
+                file = new File( directory, "partition-" + sliceByteSize + "-" + partitionIndex + ".bin" );
+            }
+
+            // Sparse file, pages are only backed by disk or page cache once they are touched
+            randomAccessFile = new RandomAccessFile( file, "rw" );
+            randomAccessFile.setLength( partitionByteSize );
+            mappedByteBuffer = randomAccessFile.getChannel().map( MapMode.READ_WRITE, 0, partitionByteSize );
+            this.randomAccessFile = randomAccessFile;
+        }
+        catch ( IOException e )
+        {
+            closeQuietly( randomAccessFile );
+            if ( temporary && file != null )
+            {
+                file.delete();
+            }
+            throw new RuntimeException( "Could not map partition file for partition " + partitionIndex, e );
+        }
+        this.file = file;
+
+        for ( int i = 0; i < slices; i++ )
+        {
+            ByteBuffer buffer = mappedByteBuffer.duplicate();
+            buffer.limit( ( i + 1 ) * sliceByteSize );
+            buffer.position( i * sliceByteSize );
+            this.slices[i] = new ByteBufferPartitionSlice( buffer.slice(), i, this, sliceByteSize );
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        // Only the closing thread that wins may unmap, a second unmap of the same buffer crashes the JVM
+        if ( !close0() )
+        {
+            return;
+        }
+
+        freeSlices();
+
+        if ( !temporary )
+        {
+            mappedByteBuffer.force();
+        }
+        BufferUtils.cleanByteBuffer( mappedByteBuffer );
+        closeQuietly( randomAccessFile );
+        if ( temporary )
+        {
+            file.delete();
+        }
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    @Override
+    protected AbstractPartitionSlice get( int index )
+    {
+        return slices[index];
+    }
+
+    private static synchronized File temporaryDirectory()
+        throws IOException
+    {
+        if ( temporaryDirectory == null || !temporaryDirectory.isDirectory() )
+        {
+            File directory = File.createTempFile( "directringcache-partitions-", "" );
+            if ( !directory.delete() || !directory.mkdir() )
+            {
+                throw new IOException( "Could not create directory " + directory + " for temporary partitions" );
+            }
+
+            // Registered once instead of per partition, the exit hook keeps every registered path until shutdown.
+            // Partitions delete their files on close, so the directory is empty at exit unless pools leaked.
+            directory.deleteOnExit();
+            temporaryDirectory = directory;
+        }
+        return temporaryDirectory;
+    }
+
+    private static void closeQuietly( RandomAccessFile randomAccessFile )
+    {
+        if ( randomAccessFile == null )
+        {
+            return;
+        }
+
+        try
+        {
+            randomAccessFile.close();
+        }
+        catch ( IOException e )
+        {
+            // Ignore since the mapping is already released
+        }
+    }
+
+}
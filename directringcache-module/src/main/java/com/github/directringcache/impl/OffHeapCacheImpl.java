@@ -0,0 +1,535 @@
+package com.github.directringcache.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.github.directringcache.OffHeapCache;
+import com.github.directringcache.PartitionBuffer;
+import com.github.directringcache.PartitionBufferPool;
+import com.github.directringcache.RemappingFunction;
+import com.github.directringcache.Serializer;
+
+public class OffHeapCacheImpl<K, V>
+    implements OffHeapCache<K, V>
+{
+
+    // Records are appended to blocks as keyLength, valueLength, key bytes, value bytes
+    private static final int RECORD_HEADER_BYTE_SIZE = 4 + 4;
+
+    // Lock order is evictionLock, index stripes, appendLock; evicting never holds more than one stripe
+
+    private final Lock evictionLock = new ReentrantLock();
+
+    // Guards the block table and the write block
+    private final Object appendLock = new Object();
+
+    private final PartitionBufferPool partitionBufferPool;
+
+    private final Serializer<K> keySerializer;
+
+    private final Serializer<V> valueSerializer;
+
+    private final int blockByteSize;
+
+    private final OffHeapHashIndex index;
+
+    private volatile Block[] blocks = new Block[16];
+
+    private Block writeBlock;
+
+    private int clockHand;
+
+    private volatile long evictionCount;
+
+    public OffHeapCacheImpl( PartitionBufferPool partitionBufferPool, Serializer<K> keySerializer,
+                             Serializer<V> valueSerializer, int blockByteSize, int initialCapacity,
+                             int concurrencyLevel )
+    {
+        this.partitionBufferPool = partitionBufferPool;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.blockByteSize = blockByteSize;
+        this.index = new OffHeapHashIndex( partitionBufferPool, new OffHeapHashIndex.KeyComparator()
+        {
+
+            @Override
+            public boolean keyEquals( long address, byte[] key )
+            {
+                return OffHeapCacheImpl.this.keyEquals( address, key );
+            }
+        }, initialCapacity, concurrencyLevel );
+    }
+
+    @Override
+    public V get( K key )
+    {
+        byte[] keyBytes = keySerializer.serialize( key );
+        long hash = OffHeapHashIndex.hash( keyBytes );
+
+        byte[] valueBytes;
+        OffHeapHashIndex.Stripe stripe = index.stripe( hash );
+        Lock readLock = stripe.lock.readLock();
+        readLock.lock();
+        try
+        {
+            long address = stripe.get( hash, keyBytes );
+            if ( address == 0 )
+            {
+                return null;
+            }
+            Block block = block( address );
+            block.referenced = true;
+            valueBytes = readValue( block, offset( address ) );
+        }
+        finally
+        {
+            readLock.unlock();
+        }
+        return valueSerializer.deserialize( valueBytes );
+    }
+
+    @Override
+    public boolean containsKey( K key )
+    {
+        byte[] keyBytes = keySerializer.serialize( key );
+        long hash = OffHeapHashIndex.hash( keyBytes );
+
+        OffHeapHashIndex.Stripe stripe = index.stripe( hash );
+        Lock readLock = stripe.lock.readLock();
+        readLock.lock();
+        try
+        {
+            return stripe.get( hash, keyBytes ) != 0;
+        }
+        finally
+        {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void put( K key, V value )
+    {
+        byte[] keyBytes = keySerializer.serialize( key );
+        byte[] valueBytes = valueSerializer.serialize( value );
+        long hash = OffHeapHashIndex.hash( keyBytes );
+
+        OffHeapHashIndex.Stripe stripe = index.stripe( hash );
+        while ( true )
+        {
+            Lock writeLock = stripe.lock.writeLock();
+            writeLock.lock();
+            try
+            {
+                if ( store( stripe, hash, keyBytes, valueBytes ) )
+                {
+                    return;
+                }
+            }
+            finally
+            {
+                writeLock.unlock();
+            }
+
+            // Evicting touches other stripes, so the pool is refilled outside of this one
+            evict();
+        }
+    }
+
+    @Override
+    public boolean remove( K key )
+    {
+        byte[] keyBytes = keySerializer.serialize( key );
+        long hash = OffHeapHashIndex.hash( keyBytes );
+
+        OffHeapHashIndex.Stripe stripe = index.stripe( hash );
+        Lock writeLock = stripe.lock.writeLock();
+        writeLock.lock();
+        try
+        {
+            long address = stripe.remove( hash, keyBytes );
+            if ( address == 0 )
+            {
+                return false;
+            }
+            release( address );
+            return true;
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public V compute( K key, RemappingFunction<K, V> remappingFunction )
+    {
+        byte[] keyBytes = keySerializer.serialize( key );
+        long hash = OffHeapHashIndex.hash( keyBytes );
+
+        OffHeapHashIndex.Stripe stripe = index.stripe( hash );
+        while ( true )
+        {
+            Lock writeLock = stripe.lock.writeLock();
+            writeLock.lock();
+            try
+            {
+                long address = stripe.get( hash, keyBytes );
+                V value = null;
+                if ( address != 0 )
+                {
+                    Block block = block( address );
+                    block.referenced = true;
+                    value = valueSerializer.deserialize( readValue( block, offset( address ) ) );
+                }
+
+                V newValue = remappingFunction.apply( key, value );
+                if ( newValue == null )
+                {
+                    if ( address != 0 )
+                    {
+                        stripe.remove( hash, address );
+                        release( address );
+                    }
+                    return null;
+                }
+                if ( store( stripe, hash, keyBytes, valueSerializer.serialize( newValue ) ) )
+                {
+                    return newValue;
+                }
+            }
+            finally
+            {
+                writeLock.unlock();
+            }
+
+            // As with put the stripe is left for evicting, the function is applied again on the current value
+            evict();
+        }
+    }
+
+    @Override
+    public long size()
+    {
+        return index.size();
+    }
+
+    @Override
+    public long getEvictionCount()
+    {
+        return evictionCount;
+    }
+
+    @Override
+    public void clear()
+    {
+        evictionLock.lock();
+        index.lockAll();
+        try
+        {
+            synchronized ( appendLock )
+            {
+                freeBlocks();
+            }
+            index.clear();
+        }
+        finally
+        {
+            index.unlockAll();
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        evictionLock.lock();
+        index.lockAll();
+        try
+        {
+            synchronized ( appendLock )
+            {
+                freeBlocks();
+            }
+            index.free();
+        }
+        finally
+        {
+            index.unlockAll();
+            evictionLock.unlock();
+        }
+    }
+
+    private boolean store( OffHeapHashIndex.Stripe stripe, long hash, byte[] keyBytes, byte[] valueBytes )
+    {
+        // Callers hold the stripe's write lock, false means the pool ran dry
+        if ( !stripe.ensureCapacity() )
+        {
+            return false;
+        }
+        long address = append( keyBytes, valueBytes );
+        if ( address == 0 )
+        {
+            return false;
+        }
+
+        long previous = stripe.put( hash, keyBytes, address );
+        if ( previous != 0 )
+        {
+            release( previous );
+        }
+        return true;
+    }
+
+    private long append( byte[] keyBytes, byte[] valueBytes )
+    {
+        int recordLength = RECORD_HEADER_BYTE_SIZE + keyBytes.length + valueBytes.length;
+        synchronized ( appendLock )
+        {
+            if ( writeBlock == null || writeBlock.writeOffset + recordLength > writeBlock.capacity )
+            {
+                Block block = allocateBlock( Math.max( blockByteSize, recordLength ) );
+                if ( block == null )
+                {
+                    return 0;
+                }
+                Block previousWriteBlock = writeBlock;
+                writeBlock = block;
+                if ( previousWriteBlock != null && !previousWriteBlock.evicting
+                    && previousWriteBlock.liveBytes.get() == 0 )
+                {
+                    freeBlock( previousWriteBlock );
+                }
+            }
+
+            PartitionBuffer buffer = writeBlock.buffer;
+            long address = address( writeBlock.index, writeBlock.writeOffset );
+            buffer.writeInt( keyBytes.length );
+            buffer.writeInt( valueBytes.length );
+            buffer.writeBytes( keyBytes );
+            buffer.writeBytes( valueBytes );
+            writeBlock.writeOffset += recordLength;
+            writeBlock.liveBytes.addAndGet( recordLength );
+            return address;
+        }
+    }
+
+    private void release( long address )
+    {
+        // Callers hold the write lock of the stripe that referenced the record, so no reader can still reach it
+        Block block = block( address );
+        int offset = offset( address );
+        int recordLength = RECORD_HEADER_BYTE_SIZE + block.buffer.getInt( offset ) + block.buffer.getInt( offset + 4 );
+        if ( block.liveBytes.addAndGet( -recordLength ) == 0 )
+        {
+            synchronized ( appendLock )
+            {
+                if ( block != writeBlock && !block.evicting && blocks[block.index] == block )
+                {
+                    freeBlock( block );
+                }
+            }
+        }
+    }
+
+    private void evict()
+    {
+        evictionLock.lock();
+        try
+        {
+            Block block;
+            synchronized ( appendLock )
+            {
+                block = selectVictim();
+                block.evicting = true;
+            }
+            evictBlock( block );
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    private Block selectVictim()
+    {
+        // CLOCK over blocks, recently read blocks get a second chance
+        Block[] blocks = this.blocks;
+        for ( int i = 0; i < blocks.length * 2; i++ )
+        {
+            Block block = blocks[clockHand];
+            clockHand = ( clockHand + 1 ) % blocks.length;
+            if ( block == null || block == writeBlock )
+            {
+                continue;
+            }
+            if ( block.referenced )
+            {
+                block.referenced = false;
+                continue;
+            }
+            return block;
+        }
+
+        if ( writeBlock == null )
+        {
+            throw new IllegalStateException( "PartitionBufferPool is exhausted and the cache holds no blocks to evict" );
+        }
+        Block block = writeBlock;
+        writeBlock = null;
+        return block;
+    }
+
+    private void evictBlock( Block block )
+    {
+        // Records never change once written and the block is kept alive by its evicting flag
+        PartitionBuffer buffer = block.buffer;
+        int offset = 0;
+        while ( offset < block.writeOffset )
+        {
+            int keyLength = buffer.getInt( offset );
+            int valueLength = buffer.getInt( offset + 4 );
+            byte[] keyBytes = new byte[keyLength];
+            buffer.getBytes( offset + RECORD_HEADER_BYTE_SIZE, keyBytes );
+
+            // Overwritten and removed records are no longer referenced by the index
+            long hash = OffHeapHashIndex.hash( keyBytes );
+            OffHeapHashIndex.Stripe stripe = index.stripe( hash );
+            Lock writeLock = stripe.lock.writeLock();
+            writeLock.lock();
+            try
+            {
+                if ( stripe.remove( hash, address( block.index, offset ) ) )
+                {
+                    evictionCount++;
+                }
+            }
+            finally
+            {
+                writeLock.unlock();
+            }
+            offset += RECORD_HEADER_BYTE_SIZE + keyLength + valueLength;
+        }
+
+        synchronized ( appendLock )
+        {
+            freeBlock( block );
+        }
+    }
+
+    private Block allocateBlock( int capacity )
+    {
+        PartitionBuffer buffer = null;
+        try
+        {
+            buffer = partitionBufferPool.getPartitionBuffer();
+            buffer.ensureWritable( capacity );
+        }
+        catch ( RuntimeException e )
+        {
+            // Pool is exhausted, callers evict and retry
+            if ( buffer != null )
+            {
+                buffer.free();
+            }
+            return null;
+        }
+
+        int blockIndex = 0;
+        while ( blockIndex < blocks.length && blocks[blockIndex] != null )
+        {
+            blockIndex++;
+        }
+        if ( blockIndex == blocks.length )
+        {
+            blocks = Arrays.copyOf( blocks, blocks.length * 2 );
+        }
+        Block block = new Block( blockIndex, buffer, capacity );
+        blocks[blockIndex] = block;
+        return block;
+    }
+
+    private void freeBlock( Block block )
+    {
+        blocks[block.index] = null;
+        block.buffer.free();
+    }
+
+    private void freeBlocks()
+    {
+        for ( Block block : blocks )
+        {
+            if ( block != null )
+            {
+                freeBlock( block );
+            }
+        }
+        writeBlock = null;
+    }
+
+    private boolean keyEquals( long address, byte[] key )
+    {
+        Block block = block( address );
+        int offset = offset( address );
+        if ( block.buffer.getInt( offset ) != key.length )
+        {
+            return false;
+        }
+        byte[] storedKey = new byte[key.length];
+        block.buffer.getBytes( offset + RECORD_HEADER_BYTE_SIZE, storedKey );
+        return Arrays.equals( key, storedKey );
+    }
+
+    private byte[] readValue( Block block, int offset )
+    {
+        int keyLength = block.buffer.getInt( offset );
+        byte[] value = new byte[block.buffer.getInt( offset + 4 )];
+        block.buffer.getBytes( offset + RECORD_HEADER_BYTE_SIZE + keyLength, value );
+        return value;
+    }
+
+    private Block block( long address )
+    {
+        return blocks[(int) ( address >>> 32 ) - 1];
+    }
+
+    private static long address( int blockIndex, int offset )
+    {
+        // Block indexes are shifted by one so no address is ever 0
+        return ( (long) ( blockIndex + 1 ) << 32 ) | offset;
+    }
+
+    private static int offset( long address )
+    {
+        return (int) address;
+    }
+
+    private static class Block
+    {
+
+        private final int index;
+
+        private final PartitionBuffer buffer;
+
+        private final int capacity;
+
+        private int writeOffset;
+
+        private final AtomicLong liveBytes = new AtomicLong();
+
+        private volatile boolean referenced;
+
+        // Set once the block is chosen for eviction, keeps it from being freed under the evicting thread
+        private volatile boolean evicting;
+
+        private Block( int index, PartitionBuffer buffer, int capacity )
+        {
+            this.index = index;
+            this.buffer = buffer;
+            this.capacity = capacity;
+        }
+    }
+
+}
@@ -0,0 +1,468 @@
+package com.github.directringcache.impl;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.github.directringcache.PartitionBuffer;
+import com.github.directringcache.PartitionBufferPool;
+
+class OffHeapHashIndex
+{
+
+    // A slot holds the key's 64 bit hash and the record address, 0 marks an empty slot
+    private static final int SLOT_BYTE_SIZE = 16;
+
+    private static final int MIN_SLOTS = 16;
+
+    // Only left behind in tables that are being migrated, so lookups there keep probing past moved entries
+    private static final long TOMBSTONE = -1;
+
+    // Every write moves this many slots of a growing stripe, enough to finish before the new table fills up
+    private static final int MIGRATION_SLOTS_PER_WRITE = 16;
+
+    private final PartitionBufferPool partitionBufferPool;
+
+    private final KeyComparator keyComparator;
+
+    private final Stripe[] stripes;
+
+    private final int stripeMask;
+
+    OffHeapHashIndex( PartitionBufferPool partitionBufferPool, KeyComparator keyComparator, int initialCapacity,
+                      int concurrency )
+    {
+        this.partitionBufferPool = partitionBufferPool;
+        this.keyComparator = keyComparator;
+
+        int stripeCount = Integer.highestOneBit( Math.max( 1, concurrency ) - 1 ) << 1;
+        this.stripes = new Stripe[Math.max( 1, stripeCount )];
+        this.stripeMask = stripes.length - 1;
+        int initialSlots = slotsFor( ( initialCapacity + stripes.length - 1 ) / stripes.length );
+        for ( int i = 0; i < stripes.length; i++ )
+        {
+            stripes[i] = new Stripe( initialSlots );
+        }
+    }
+
+    static long hash( byte[] key )
+    {
+        // FNV-1a, finished with the murmur3 mixer to spread the bits used for the stripe and slot index
+        long hash = 0xCBF29CE484222325L;
+        for ( byte b : key )
+        {
+            hash = ( hash ^ ( b & 0xFF ) ) * 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ ( hash >>> 33 );
+    }
+
+    Stripe stripe( long hash )
+    {
+        // High bits pick the stripe, low bits the slot within it
+        return stripes[(int) ( hash >>> 40 ) & stripeMask];
+    }
+
+    long size()
+    {
+        long size = 0;
+        for ( Stripe stripe : stripes )
+        {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    void lockAll()
+    {
+        // Always in stripe order, other users hold at most one stripe at a time
+        for ( Stripe stripe : stripes )
+        {
+            stripe.lock.writeLock().lock();
+        }
+    }
+
+    void unlockAll()
+    {
+        for ( int i = stripes.length - 1; i >= 0; i-- )
+        {
+            stripes[i].lock.writeLock().unlock();
+        }
+    }
+
+    // The following methods touch all stripes, callers must hold lockAll
+
+    void clear()
+    {
+        for ( Stripe stripe : stripes )
+        {
+            stripe.clear();
+        }
+    }
+
+    void free()
+    {
+        for ( Stripe stripe : stripes )
+        {
+            stripe.free();
+        }
+    }
+
+    private Table allocateTable( int slots )
+    {
+        PartitionBuffer buffer = null;
+        try
+        {
+            buffer = partitionBufferPool.getPartitionBuffer();
+            buffer.ensureWritable( (long) slots * SLOT_BYTE_SIZE );
+        }
+        catch ( RuntimeException e )
+        {
+            // Pool is exhausted, callers evict and retry
+            if ( buffer != null )
+            {
+                buffer.free();
+            }
+            return null;
+        }
+        buffer.writerIndex( (long) slots * SLOT_BYTE_SIZE );
+        Table table = new Table( buffer, slots );
+        table.clear();
+        return table;
+    }
+
+    private static int slotsFor( int capacity )
+    {
+        int slots = MIN_SLOTS;
+        while ( slots - ( slots >>> 2 ) < capacity )
+        {
+            slots <<= 1;
+        }
+        return slots;
+    }
+
+    class Stripe
+    {
+
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private final int initialSlots;
+
+        private Table table;
+
+        // Previous table while its entries are moved over, lookups fall back to it until it is drained
+        private Table migrating;
+
+        private int migrationCursor;
+
+        private volatile int size;
+
+        private Stripe( int initialSlots )
+        {
+            this.initialSlots = initialSlots;
+            this.table = allocateTable( initialSlots );
+            if ( table == null )
+            {
+                throw new IllegalStateException( "PartitionBufferPool cannot hold an index of " + initialSlots
+                    + " slots" );
+            }
+        }
+
+        // Callers hold the read lock for lookups and the write lock for everything else
+
+        long get( long hash, byte[] key )
+        {
+            int slot = table.find( hash, key );
+            if ( slot >= 0 )
+            {
+                return table.address( slot );
+            }
+            if ( migrating != null )
+            {
+                slot = migrating.find( hash, key );
+                if ( slot >= 0 )
+                {
+                    return migrating.address( slot );
+                }
+            }
+            return 0;
+        }
+
+        boolean ensureCapacity()
+        {
+            if ( size + 1 <= table.limit() )
+            {
+                return true;
+            }
+            if ( migrating != null )
+            {
+                migrate( Integer.MAX_VALUE );
+            }
+
+            Table newTable = allocateTable( table.slots() << 1 );
+            if ( newTable == null )
+            {
+                return false;
+            }
+            migrating = table;
+            migrationCursor = 0;
+            table = newTable;
+            return true;
+        }
+
+        long put( long hash, byte[] key, long address )
+        {
+            // Callers must have made room through ensureCapacity
+            migrate( MIGRATION_SLOTS_PER_WRITE );
+
+            int slot = table.find( hash, key );
+            if ( slot >= 0 )
+            {
+                long previous = table.address( slot );
+                table.setSlot( slot, hash, address );
+                return previous;
+            }
+
+            table.insert( hash, address );
+            if ( migrating != null )
+            {
+                slot = migrating.find( hash, key );
+                if ( slot >= 0 )
+                {
+                    long previous = migrating.address( slot );
+                    migrating.setSlot( slot, hash, TOMBSTONE );
+                    return previous;
+                }
+            }
+            size++;
+            return 0;
+        }
+
+        long remove( long hash, byte[] key )
+        {
+            migrate( MIGRATION_SLOTS_PER_WRITE );
+
+            int slot = table.find( hash, key );
+            if ( slot >= 0 )
+            {
+                long address = table.address( slot );
+                table.removeSlot( slot );
+                size--;
+                return address;
+            }
+            if ( migrating != null )
+            {
+                slot = migrating.find( hash, key );
+                if ( slot >= 0 )
+                {
+                    long address = migrating.address( slot );
+                    migrating.setSlot( slot, hash, TOMBSTONE );
+                    size--;
+                    return address;
+                }
+            }
+            return 0;
+        }
+
+        boolean remove( long hash, long address )
+        {
+            int slot = table.find( hash, address );
+            if ( slot >= 0 )
+            {
+                table.removeSlot( slot );
+                size--;
+                return true;
+            }
+            if ( migrating != null )
+            {
+                slot = migrating.find( hash, address );
+                if ( slot >= 0 )
+                {
+                    migrating.setSlot( slot, hash, TOMBSTONE );
+                    size--;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void migrate( int slots )
+        {
+            if ( migrating == null )
+            {
+                return;
+            }
+
+            int end = (int) Math.min( migrating.slots(), (long) migrationCursor + slots );
+            for ( ; migrationCursor < end; migrationCursor++ )
+            {
+                long address = migrating.address( migrationCursor );
+                if ( address != 0 && address != TOMBSTONE )
+                {
+                    long hash = migrating.hash( migrationCursor );
+                    table.insert( hash, address );
+                    migrating.setSlot( migrationCursor, hash, TOMBSTONE );
+                }
+            }
+            if ( migrationCursor == migrating.slots() )
+            {
+                migrating.free();
+                migrating = null;
+            }
+        }
+
+        private void clear()
+        {
+            if ( migrating != null )
+            {
+                migrating.free();
+                migrating = null;
+            }
+            Table newTable = table.slots() == initialSlots ? null : allocateTable( initialSlots );
+            if ( newTable == null )
+            {
+                table.clear();
+            }
+            else
+            {
+                table.free();
+                table = newTable;
+            }
+            size = 0;
+        }
+
+        private void free()
+        {
+            if ( migrating != null )
+            {
+                migrating.free();
+                migrating = null;
+            }
+            table.free();
+            size = 0;
+        }
+    }
+
+    private class Table
+    {
+
+        private final PartitionBuffer buffer;
+
+        private final int mask;
+
+        private Table( PartitionBuffer buffer, int slots )
+        {
+            this.buffer = buffer;
+            this.mask = slots - 1;
+        }
+
+        int slots()
+        {
+            return mask + 1;
+        }
+
+        int limit()
+        {
+            return slots() - ( slots() >>> 2 );
+        }
+
+        int find( long hash, byte[] key )
+        {
+            int slot = (int) hash & mask;
+            long address;
+            while ( ( address = address( slot ) ) != 0 )
+            {
+                if ( address != TOMBSTONE && hash( slot ) == hash && keyComparator.keyEquals( address, key ) )
+                {
+                    return slot;
+                }
+                slot = ( slot + 1 ) & mask;
+            }
+            return -1;
+        }
+
+        int find( long hash, long address )
+        {
+            int slot = (int) hash & mask;
+            long candidate;
+            while ( ( candidate = address( slot ) ) != 0 )
+            {
+                if ( candidate == address )
+                {
+                    return slot;
+                }
+                slot = ( slot + 1 ) & mask;
+            }
+            return -1;
+        }
+
+        void insert( long hash, long address )
+        {
+            int slot = (int) hash & mask;
+            while ( address( slot ) != 0 )
+            {
+                slot = ( slot + 1 ) & mask;
+            }
+            setSlot( slot, hash, address );
+        }
+
+        void removeSlot( int slot )
+        {
+            // Backward shift deletion keeps probe sequences intact without tombstones
+            int hole = slot;
+            int next = ( hole + 1 ) & mask;
+            long address;
+            while ( ( address = address( next ) ) != 0 )
+            {
+                long hash = hash( next );
+                int home = (int) hash & mask;
+                if ( ( ( next - home ) & mask ) >= ( ( next - hole ) & mask ) )
+                {
+                    setSlot( hole, hash, address );
+                    hole = next;
+                }
+                next = ( next + 1 ) & mask;
+            }
+            setSlot( hole, 0, 0 );
+        }
+
+        long hash( int slot )
+        {
+            return buffer.getLong( (long) slot * SLOT_BYTE_SIZE );
+        }
+
+        long address( int slot )
+        {
+            return buffer.getLong( (long) slot * SLOT_BYTE_SIZE + 8 );
+        }
+
+        void setSlot( int slot, long hash, long address )
+        {
+            buffer.setLong( (long) slot * SLOT_BYTE_SIZE, hash );
+            buffer.setLong( (long) slot * SLOT_BYTE_SIZE + 8, address );
+        }
+
+        void clear()
+        {
+            for ( int slot = 0; slot < slots(); slot++ )
+            {
+                buffer.setLong( (long) slot * SLOT_BYTE_SIZE + 8, 0 );
+            }
+        }
+
+        void free()
+        {
+            buffer.free();
+        }
+    }
+
+    interface KeyComparator
+    {
+
+        boolean keyEquals( long address, byte[] key );
+
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.github.directringcache.impl;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.directringcache.PartitionBuffer;
+import com.github.directringcache.PartitionBufferCallback;
+
+class PartitionBufferFuture
+    implements Future<PartitionBuffer>
+{
+
+    private static final int WAITING = 0;
+
+    private static final int COMPLETED = 1;
+
+    private static final int CANCELLED = 2;
+
+    private final AtomicInteger state = new AtomicInteger( WAITING );
+
+    private final CountDownLatch done = new CountDownLatch( 1 );
+
+    private final PartitionBufferPoolImpl partitionBufferPool;
+
+    private final PartitionBufferCallback callback;
+
+    private volatile PartitionBuffer partitionBuffer;
+
+    PartitionBufferFuture( PartitionBufferPoolImpl partitionBufferPool, PartitionBufferCallback callback )
+    {
+        this.partitionBufferPool = partitionBufferPool;
+        this.callback = callback;
+    }
+
+    boolean complete( PartitionBuffer partitionBuffer )
+    {
+        this.partitionBuffer = partitionBuffer;
+        if ( !state.compareAndSet( WAITING, COMPLETED ) )
+        {
+            this.partitionBuffer = null;
+            return false;
+        }
+        done.countDown();
+        return true;
+    }
+
+    boolean isWaiting()
+    {
+        return state.get() == WAITING;
+    }
+
+    boolean hasCallback()
+    {
+        return callback != null;
+    }
+
+    void fireCompleted()
+    {
+        // Called by the pool once it released its locks, callbacks may well free buffers or request new ones
+        if ( callback != null )
+        {
+            callback.completed( partitionBuffer );
+        }
+    }
+
+    @Override
+    public boolean cancel( boolean mayInterruptIfRunning )
+    {
+        if ( !state.compareAndSet( WAITING, CANCELLED ) )
+        {
+            return false;
+        }
+        done.countDown();
+        partitionBufferPool.removeWaiter( this );
+        if ( callback != null )
+        {
+            callback.cancelled();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled()
+    {
+        return state.get() == CANCELLED;
+    }
+
+    @Override
+    public boolean isDone()
+    {
+        return state.get() != WAITING;
+    }
+
+    @Override
+    public PartitionBuffer get()
+        throws InterruptedException
+    {
+        done.await();
+        return result();
+    }
+
+    @Override
+    public PartitionBuffer get( long timeout, TimeUnit unit )
+        throws InterruptedException, TimeoutException
+    {
+        if ( !done.await( timeout, unit ) )
+        {
+            throw new TimeoutException( "No PartitionBuffer available after " + timeout + " " + unit );
+        }
+        return result();
+    }
+
+    PartitionBuffer getNow()
+    {
+        return result();
+    }
+
+    private PartitionBuffer result()
+    {
+        if ( state.get() == CANCELLED )
+        {
+            throw new CancellationException( "PartitionBuffer request was cancelled" );
+        }
+        return partitionBuffer;
+    }
+
+}
@@ -1,7 +1,10 @@
 package com.github.directringcache.impl;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
 import java.util.Arrays;
 
 import com.github.directringcache.PartitionBuffer;
@@ -12,11 +15,25 @@ class PartitionBufferImpl
     implements PartitionBuffer
 {
 
+    static final int SNAPSHOT_HEADER_BYTE_SIZE = 1 + 8 + 8 + 4;
+
+    private static final int SLICE_TABLE_CHUNK_SHIFT = 10;
+
+    private static final int SLICE_TABLE_CHUNK_SIZE = 1 << SLICE_TABLE_CHUNK_SHIFT;
+
+    private static final int SLICE_TABLE_CHUNK_MASK = SLICE_TABLE_CHUNK_SIZE - 1;
+
+    // New slices a single readFrom may claim beyond the allocated ones, channels rarely fill large reads at once
+    private static final int READ_WINDOW_SLICES = 16;
+
     private final PartitionBufferPoolImpl partitionBufferPool;
 
-    private final int positionMask;
+    private final SliceLayout sliceLayout;
+
+    // Two-level table, only the first chunk grows by copying and only until it reaches the chunk size
+    private volatile PartitionSlice[][] sliceTable = new PartitionSlice[][] { new PartitionSlice[1] };
 
-    private volatile PartitionSlice[] slices = new PartitionSlice[0];
+    private volatile int sliceCount = 0;
 
     private ByteOrder byteOrder;
 
@@ -27,7 +44,7 @@ class PartitionBufferImpl
     public PartitionBufferImpl( PartitionBufferPoolImpl partitionBufferPool, ByteOrder byteOrder )
     {
         this.partitionBufferPool = partitionBufferPool;
-        this.positionMask = partitionBufferPool.getSliceByteSize() - 1;
+        this.sliceLayout = partitionBufferPool.getSliceLayout();
         this.byteOrder = byteOrder;
         resize( 1 );
     }
@@ -47,13 +64,15 @@ class PartitionBufferImpl
     @Override
     public byte readByte()
     {
-        return read();
+        byte value = getByte( readerIndex );
+        readerIndex++;
+        return value;
     }
 
     @Override
     public short readUnsignedByte()
     {
-        return (short) ( read() & 0xFF );
+        return (short) ( readByte() & 0xFF );
     }
 
     @Override
@@ -65,31 +84,49 @@ class PartitionBufferImpl
     @Override
     public void readBytes( byte[] bytes, int offset, int length )
     {
-        int baseSliceIndex = sliceIndex( readerIndex );
-        PartitionSlice slice = slices[baseSliceIndex];
-        if ( slice.readableBytes() >= length )
+        getBytes( readerIndex, bytes, offset, length );
+        readerIndex += length;
+    }
+
+    @Override
+    public void readByteBuffer( ByteBuffer byteBuffer )
+    {
+        long position = readerIndex;
+        int length = byteBuffer.remaining();
+        readableCheck( position, length );
+
+        ByteBuffer target = byteBuffer.duplicate();
+        while ( target.hasRemaining() )
         {
-            slice.read( bytes, offset, length );
+            int sliceIndex = sliceIndex( position );
+            int relativePosition = relativePosition( position );
+            int readable = Math.min( sliceByteSize( sliceIndex ) - relativePosition, target.remaining() );
+            target.limit( target.position() + readable );
+            slice( sliceIndex ).read( relativePosition, target );
+            target.limit( byteBuffer.limit() );
+            position += readable;
         }
-        else
-        {
-            int remaining = length - slice.readableBytes();
-            int additionalSlices = ( remaining / sliceByteSize() ) + ( remaining % sliceByteSize() != 0 ? 1 : 0 );
+        byteBuffer.position( byteBuffer.position() + length );
+        readerIndex = position;
+    }
 
-            if ( baseSliceIndex + additionalSlices + 1 > slices.length )
-            {
-                throw new IndexOutOfBoundsException( "Not enough data to load" );
-            }
+    @Override
+    public long writeTo( GatheringByteChannel channel )
+        throws IOException
+    {
+        long position = readerIndex;
+        long length = writerIndex - position;
+        if ( length <= 0 )
+        {
+            return 0;
+        }
 
-            int sliceOffset = offset;
-            for ( int i = baseSliceIndex; i <= baseSliceIndex + additionalSlices; i++ )
-            {
-                int readable = Math.min( slices[i].readableBytes(), length - sliceOffset );
-                slices[i].read( bytes, sliceOffset, readable );
-                sliceOffset += readable;
-            }
+        long written = channel.write( sliceViews( position, length ) );
+        if ( written > 0 )
+        {
+            readerIndex = position + written;
         }
-        readerIndex += length;
+        return written;
     }
 
     @Override
@@ -113,13 +150,17 @@ class PartitionBufferImpl
     @Override
     public long readLong()
     {
-        return BufferUtils.getLong( this, byteOrder == ByteOrder.BIG_ENDIAN );
+        long value = getLong( readerIndex );
+        readerIndex += 8;
+        return value;
     }
 
     @Override
     public short readShort()
     {
-        return BufferUtils.getShort( this, byteOrder == ByteOrder.BIG_ENDIAN );
+        short value = getShort( readerIndex );
+        readerIndex += 2;
+        return value;
     }
 
     @Override
@@ -131,7 +172,9 @@ class PartitionBufferImpl
     @Override
     public int readInt()
     {
-        return BufferUtils.getInt( this, byteOrder == ByteOrder.BIG_ENDIAN );
+        int value = getInt( readerIndex );
+        readerIndex += 4;
+        return value;
     }
 
     @Override
@@ -152,6 +195,96 @@ class PartitionBufferImpl
         this.readerIndex = readerIndex;
     }
 
+    @Override
+    public byte getByte( long index )
+    {
+        readableCheck( index, 1 );
+        return slice( sliceIndex( index ) ).read( relativePosition( index ) );
+    }
+
+    @Override
+    public void getBytes( long index, byte[] bytes )
+    {
+        getBytes( index, bytes, 0, bytes.length );
+    }
+
+    @Override
+    public void getBytes( long index, byte[] bytes, int offset, int length )
+    {
+        if ( index < 0 || index + length > writerIndex )
+        {
+            throw new IndexOutOfBoundsException( "Not enough data to load" );
+        }
+        arrayRangeCheck( bytes, offset, length );
+
+        long position = index;
+        int arrayOffset = offset;
+        int remaining = length;
+        while ( remaining > 0 )
+        {
+            int sliceIndex = sliceIndex( position );
+            int relativePosition = relativePosition( position );
+            int readable = contiguousLength( sliceIndex, relativePosition, remaining );
+            if ( readable > sliceByteSize( sliceIndex ) - relativePosition )
+            {
+                ( (UnsafePartitionSlice) slice( sliceIndex ) ).readContiguous( relativePosition, bytes, arrayOffset,
+                                                                               readable );
+            }
+            else
+            {
+                slice( sliceIndex ).read( relativePosition, bytes, arrayOffset, readable );
+            }
+            position += readable;
+            arrayOffset += readable;
+            remaining -= readable;
+        }
+    }
+
+    @Override
+    public short getShort( long index )
+    {
+        readableCheck( index, 2 );
+        int sliceIndex = sliceIndex( index );
+        int relativePosition = relativePosition( index );
+        if ( relativePosition + 2 > sliceByteSize( sliceIndex ) )
+        {
+            return BufferUtils.getShort( this, index, byteOrder == ByteOrder.BIG_ENDIAN );
+        }
+
+        short value = slice( sliceIndex ).getShort( relativePosition );
+        return byteOrder == ByteOrder.BIG_ENDIAN ? value : Short.reverseBytes( value );
+    }
+
+    @Override
+    public int getInt( long index )
+    {
+        readableCheck( index, 4 );
+        int sliceIndex = sliceIndex( index );
+        int relativePosition = relativePosition( index );
+        if ( relativePosition + 4 > sliceByteSize( sliceIndex ) )
+        {
+            return BufferUtils.getInt( this, index, byteOrder == ByteOrder.BIG_ENDIAN );
+        }
+
+        int value = slice( sliceIndex ).getInt( relativePosition );
+        return byteOrder == ByteOrder.BIG_ENDIAN ? value : Integer.reverseBytes( value );
+    }
+
+    @Override
+    public long getLong( long index )
+    {
+        readableCheck( index, 8 );
+        int sliceIndex = sliceIndex( index );
+        int relativePosition = relativePosition( index );
+        if ( relativePosition + 8 > sliceByteSize( sliceIndex ) )
+        {
+            return BufferUtils.getLong( this, index, byteOrder == ByteOrder.BIG_ENDIAN );
+        }
+
+        long value = slice( sliceIndex ).getLong( relativePosition );
+        return byteOrder == ByteOrder.BIG_ENDIAN ? value : Long.reverseBytes( value );
+    }
+
     @Override
     public boolean writeable()
     {
@@ -161,7 +294,10 @@ class PartitionBufferImpl
     @Override
     public void writeByte( int value )
     {
-        put( (byte) value );
+        long position = writerIndex;
+        ensureSlices( position, 1 );
+        setByte( position, value );
+        writerIndex = position + 1;
     }
 
     @Override
@@ -173,87 +309,165 @@ class PartitionBufferImpl
     @Override
     public void writeBytes( byte[] bytes, int offset, int length )
     {
-        int baseSliceIndex = slices.length - 1;
-        PartitionSlice slice = slices[baseSliceIndex];
-        if ( slice.writeableBytes() >= length )
-        {
-            slice.put( bytes, offset, length );
-        }
-        else
-        {
-            int remaining = length - slice.writeableBytes();
-            int additionalSlices = ( remaining / sliceByteSize() ) + ( remaining % sliceByteSize() != 0 ? 1 : 0 );
+        long position = writerIndex;
+        ensureSlices( position, length );
+        setBytes( position, bytes, offset, length );
+        writerIndex = position + length;
+    }
 
-            resize( slices.length + additionalSlices );
+    @Override
+    public void writeByteBuffer( ByteBuffer byteBuffer )
+    {
+        ByteBuffer source = byteBuffer.duplicate();
+        source.position( 0 );
+        transferFrom( source );
+    }
 
-            int sliceOffset = offset;
-            for ( int i = baseSliceIndex; i <= baseSliceIndex + additionalSlices; i++ )
-            {
-                int writeable = Math.min( slices[i].writeableBytes(), length - sliceOffset );
-                slices[i].put( bytes, sliceOffset, writeable );
-                sliceOffset += writeable;
-            }
-        }
-        writerIndex += length;
+    @Override
+    public void writeByteBuffer( ByteBuffer byteBuffer, int offset, int length )
+    {
+        ByteBuffer source = byteBuffer.duplicate();
+        source.limit( offset + length );
+        source.position( offset );
+        transferFrom( source );
     }
 
     @Override
-    public void writeByteBuffer( ByteBuffer byteBuffer )
+    public void writePartitionBuffer( ReadablePartitionBuffer partitionBuffer )
+    {
+        long offset = partitionBuffer.readerIndex();
+        writePartitionBuffer( partitionBuffer, offset, partitionBuffer.readableSize() - offset );
+    }
+
+    @Override
+    public void writePartitionBuffer( ReadablePartitionBuffer partitionBuffer, long offset, long length )
     {
-        byteBuffer.mark();
-        byteBuffer.position( 0 );
+        if ( partitionBuffer instanceof PartitionBufferImpl )
+        {
+            copyPartitionBuffer( (PartitionBufferImpl) partitionBuffer, offset, length );
+            return;
+        }
 
-        if ( byteBuffer.hasArray() )
+        long readerIndex = partitionBuffer.readerIndex();
+        partitionBuffer.readerIndex( offset );
+        long position = 0;
+        while ( position++ < length )
         {
-            writeBytes( byteBuffer.array(), byteBuffer.arrayOffset(), byteBuffer.remaining() );
+            writeByte( partitionBuffer.readByte() );
         }
-        else
+        partitionBuffer.readerIndex( readerIndex );
+    }
+
+    @Override
+    public void ensureWritable( long bytes )
+    {
+        if ( bytes < 0 )
         {
-            while ( byteBuffer.hasRemaining() )
-            {
-                put( byteBuffer.get() );
-            }
+            throw new IllegalArgumentException( "bytes must not be negative" );
         }
-        byteBuffer.reset();
+        ensureSlices( writerIndex, bytes );
     }
 
     @Override
-    public void writeByteBuffer( ByteBuffer byteBuffer, int offset, int length )
+    public long readFrom( ScatteringByteChannel channel, long maxBytes )
+        throws IOException
     {
-        byteBuffer.mark();
-        byteBuffer.position( offset );
-        if ( byteBuffer.hasArray() )
+        if ( maxBytes < 0 )
         {
-            writeBytes( byteBuffer.array(), byteBuffer.arrayOffset() + offset, length );
+            throw new IllegalArgumentException( "maxBytes must not be negative" );
         }
-        else
+        if ( maxBytes == 0 )
+        {
+            return 0;
+        }
+
+        long position = writerIndex;
+        int oldSliceCount = sliceCount;
+        long length = Math.min( maxBytes, sliceLayout.capacity( oldSliceCount + READ_WINDOW_SLICES ) - position );
+        ensureSlices( position, length );
+
+        long read = -1;
+        try
         {
-            int position = 0;
-            while ( position++ < length )
+            read = channel.read( sliceViews( position, length ) );
+            if ( read > 0 )
             {
-                put( byteBuffer.get() );
+                writerIndex = position + read;
             }
         }
-        byteBuffer.reset();
+        finally
+        {
+            // Slices claimed for this read but not reached by the channel go back to the pool
+            long end = position + Math.max( read, 0 );
+            int usedSliceCount = end == 0 ? 0 : sliceIndex( end - 1 ) + 1;
+            shrink( Math.max( oldSliceCount, usedSliceCount ) );
+        }
+        return read;
     }
 
-    @Override
-    public void writePartitionBuffer( ReadablePartitionBuffer partitionBuffer )
+    private ByteBuffer[] sliceViews( long position, long length )
     {
-        writePartitionBuffer( partitionBuffer, 0, partitionBuffer.readableSize() - readerIndex );
+        // Views share the slices' memory, so the channel transfers without intermediate copies
+        int firstSliceIndex = sliceIndex( position );
+        ByteBuffer[] views = new ByteBuffer[sliceIndex( position + length - 1 ) - firstSliceIndex + 1];
+        for ( int i = 0; i < views.length; i++ )
+        {
+            int relativePosition = relativePosition( position );
+            int viewLength = (int) Math.min( sliceByteSize( firstSliceIndex + i ) - relativePosition, length );
+            views[i] = slice( firstSliceIndex + i ).byteBuffer( relativePosition, viewLength );
+            position += viewLength;
+            length -= viewLength;
+        }
+        return views;
     }
 
-    @Override
-    public void writePartitionBuffer( ReadablePartitionBuffer partitionBuffer, long offset, long length )
+    private void transferFrom( ByteBuffer source )
     {
-        long readerIndex = partitionBuffer.readerIndex();
-        partitionBuffer.readerIndex( offset );
-        long position = 0;
-        while ( position++ < length )
+        long position = writerIndex;
+        ensureSlices( position, source.remaining() );
+
+        int limit = source.limit();
+        while ( source.hasRemaining() )
         {
-            put( partitionBuffer.readByte() );
+            int sliceIndex = sliceIndex( position );
+            int relativePosition = relativePosition( position );
+            int writeable = Math.min( sliceByteSize( sliceIndex ) - relativePosition, source.remaining() );
+            source.limit( source.position() + writeable );
+            slice( sliceIndex ).put( relativePosition, source );
+            source.limit( limit );
+            position += writeable;
         }
-        partitionBuffer.readerIndex( readerIndex );
+        writerIndex = position;
+    }
+
+    private void copyPartitionBuffer( PartitionBufferImpl partitionBuffer, long offset, long length )
+    {
+        partitionBuffer.readableCheck( offset, length );
+
+        long position = writerIndex;
+        ensureSlices( position, length );
+
+        long sourcePosition = offset;
+        long targetPosition = position;
+        long remaining = length;
+        while ( remaining > 0 )
+        {
+            int sourceSliceIndex = partitionBuffer.sliceIndex( sourcePosition );
+            int targetSliceIndex = sliceIndex( targetPosition );
+            int sourceRelativePosition = partitionBuffer.relativePosition( sourcePosition );
+            int targetRelativePosition = relativePosition( targetPosition );
+            int run = Math.min( partitionBuffer.sliceByteSize( sourceSliceIndex ) - sourceRelativePosition,
+                                sliceByteSize( targetSliceIndex ) - targetRelativePosition );
+            run = (int) Math.min( run, remaining );
+
+            PartitionSlice sourceSlice = partitionBuffer.slice( sourceSliceIndex );
+            PartitionSlice targetSlice = slice( targetSliceIndex );
+            targetSlice.put( targetRelativePosition, sourceSlice, sourceRelativePosition, run );
+            sourcePosition += run;
+            targetPosition += run;
+            remaining -= run;
+        }
+        writerIndex = targetPosition;
     }
 
     @Override
@@ -277,19 +491,28 @@ class PartitionBufferImpl
     @Override
     public void writeLong( long value )
     {
-        BufferUtils.putLong( value, this, byteOrder == ByteOrder.BIG_ENDIAN );
+        long position = writerIndex;
+        ensureSlices( position, 8 );
+        setLong( position, value );
+        writerIndex = position + 8;
     }
 
     @Override
     public void writeShort( short value )
     {
-        BufferUtils.putShort( value, this, byteOrder == ByteOrder.BIG_ENDIAN );
+        long position = writerIndex;
+        ensureSlices( position, 2 );
+        setShort( position, value );
+        writerIndex = position + 2;
     }
 
     @Override
     public void writeInt( int value )
     {
-        BufferUtils.putInt( value, this, byteOrder == ByteOrder.BIG_ENDIAN );
+        long position = writerIndex;
+        ensureSlices( position, 4 );
+        setInt( position, value );
+        writerIndex = position + 4;
     }
 
     @Override
@@ -304,6 +527,96 @@ class PartitionBufferImpl
         this.writerIndex = writerIndex;
     }
 
+    @Override
+    public void setByte( long index, int value )
+    {
+        writableCheck( index, 1 );
+        slice( sliceIndex( index ) ).put( relativePosition( index ), (byte) value );
+    }
+
+    @Override
+    public void setBytes( long index, byte[] bytes )
+    {
+        setBytes( index, bytes, 0, bytes.length );
+    }
+
+    @Override
+    public void setBytes( long index, byte[] bytes, int offset, int length )
+    {
+        writableCheck( index, length );
+        arrayRangeCheck( bytes, offset, length );
+
+        long position = index;
+        int arrayOffset = offset;
+        int remaining = length;
+        while ( remaining > 0 )
+        {
+            int sliceIndex = sliceIndex( position );
+            int relativePosition = relativePosition( position );
+            int writeable = contiguousLength( sliceIndex, relativePosition, remaining );
+            if ( writeable > sliceByteSize( sliceIndex ) - relativePosition )
+            {
+                ( (UnsafePartitionSlice) slice( sliceIndex ) ).putContiguous( relativePosition, bytes, arrayOffset,
+                                                                              writeable );
+            }
+            else
+            {
+                slice( sliceIndex ).put( relativePosition, bytes, arrayOffset, writeable );
+            }
+            position += writeable;
+            arrayOffset += writeable;
+            remaining -= writeable;
+        }
+    }
+
+    @Override
+    public void setShort( long index, short value )
+    {
+        writableCheck( index, 2 );
+        int sliceIndex = sliceIndex( index );
+        int relativePosition = relativePosition( index );
+        if ( relativePosition + 2 > sliceByteSize( sliceIndex ) )
+        {
+            BufferUtils.putShort( value, this, index, byteOrder == ByteOrder.BIG_ENDIAN );
+            return;
+        }
+
+        short data = byteOrder == ByteOrder.BIG_ENDIAN ? value : Short.reverseBytes( value );
+        slice( sliceIndex ).putShort( relativePosition, data );
+    }
+
+    @Override
+    public void setInt( long index, int value )
+    {
+        writableCheck( index, 4 );
+        int sliceIndex = sliceIndex( index );
+        int relativePosition = relativePosition( index );
+        if ( relativePosition + 4 > sliceByteSize( sliceIndex ) )
+        {
+            BufferUtils.putInt( value, this, index, byteOrder == ByteOrder.BIG_ENDIAN );
+            return;
+        }
+
+        int data = byteOrder == ByteOrder.BIG_ENDIAN ? value : Integer.reverseBytes( value );
+        slice( sliceIndex ).putInt( relativePosition, data );
+    }
+
+    @Override
+    public void setLong( long index, long value )
+    {
+        writableCheck( index, 8 );
+        int sliceIndex = sliceIndex( index );
+        int relativePosition = relativePosition( index );
+        if ( relativePosition + 8 > sliceByteSize( sliceIndex ) )
+        {
+            BufferUtils.putLong( value, this, index, byteOrder == ByteOrder.BIG_ENDIAN );
+            return;
+        }
+
+        long data = byteOrder == ByteOrder.BIG_ENDIAN ? value : Long.reverseBytes( value );
+        slice( sliceIndex ).putLong( relativePosition, data );
+    }
+
     @Override
     public ByteOrder byteOrder()
     {
@@ -319,18 +632,13 @@ class PartitionBufferImpl
     @Override
     public long capacity()
     {
-        long capacity = 0;
-        for ( PartitionSlice slice : slices )
-        {
-            capacity += slice != null ? slice.writerIndex() : 0L;
-        }
-        return capacity;
+        return writerIndex;
     }
 
     @Override
     public long maxCapacity()
     {
-        return slices() * sliceByteSize();
+        return sliceLayout.capacity( slices() );
     }
 
     @Override
@@ -342,91 +650,209 @@ class PartitionBufferImpl
     @Override
     public int slices()
     {
-        int slices = 0;
-        for ( int i = 0; i < this.slices.length; i++ )
-        {
-            slices += this.slices[i] != null ? 1 : 0;
-        }
-        return slices;
+        return sliceCount;
     }
 
     @Override
     public void free()
     {
-        synchronized ( slices )
+        synchronized ( this )
         {
-            for ( PartitionSlice slice : slices )
+            for ( int i = 0; i < sliceCount; i++ )
             {
-                partitionBufferPool.freeSlice( slice );
+                partitionBufferPool.freeSlice( slice( i ) );
             }
-            Arrays.fill( slices, null );
+            sliceCount = 0;
+            sliceTable = new PartitionSlice[][] { new PartitionSlice[1] };
         }
+        partitionBufferPool.unregisterPartitionBuffer( this );
+    }
+
+    void writeSnapshot( GatheringByteChannel channel )
+        throws IOException
+    {
+        long length = writerIndex;
+        ByteBuffer header = ByteBuffer.allocate( SNAPSHOT_HEADER_BYTE_SIZE );
+        header.put( (byte) ( byteOrder == ByteOrder.BIG_ENDIAN ? 0 : 1 ) );
+        header.putLong( readerIndex ).putLong( length ).putInt( sliceCount );
+        header.flip();
+
+        // Header and content leave in a single gathering write
+        ByteBuffer[] views = length > 0 ? sliceViews( 0, length ) : new ByteBuffer[0];
+        ByteBuffer[] byteBuffers = new ByteBuffer[views.length + 1];
+        byteBuffers[0] = header;
+        System.arraycopy( views, 0, byteBuffers, 1, views.length );
+        BufferUtils.writeFully( channel, byteBuffers );
     }
 
-    private void put( byte value )
+    void readSnapshot( ScatteringByteChannel channel )
+        throws IOException
     {
-        put( writerIndex++, value );
+        ByteBuffer header = ByteBuffer.allocate( SNAPSHOT_HEADER_BYTE_SIZE );
+        BufferUtils.readFully( channel, new ByteBuffer[] { header } );
+        header.flip();
+
+        byteOrder = header.get() == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        long readerIndex = header.getLong();
+        long length = header.getLong();
+        int sliceCount = header.getInt();
+        if ( readerIndex < 0 || readerIndex > length || sliceLayout.capacity( sliceCount ) < length )
+        {
+            throw new IOException( "Corrupted partition buffer snapshot" );
+        }
+
+        resize( sliceCount );
+        if ( length > 0 )
+        {
+            BufferUtils.readFully( channel, sliceViews( 0, length ) );
+        }
+        this.writerIndex = length;
+        this.readerIndex = readerIndex;
     }
 
-    private void put( long position, byte value )
+    private void readableCheck( long index, long length )
     {
-        int sliceIndex = sliceIndex( position );
-        if ( sliceIndex >= slices.length )
+        if ( index < 0 || index + length > writerIndex )
         {
-            resize( sliceIndex + 1 );
+            throw new IndexOutOfBoundsException( "Position " + index + " is not readable" );
         }
+    }
 
-        slices[sliceIndex].put( relativePosition( sliceIndex, position ), value );
+    private void writableCheck( long index, int length )
+    {
+        if ( index < 0 || index + length > sliceLayout.capacity( sliceCount ) )
+        {
+            throw new IndexOutOfBoundsException( "Position " + index + " is not writable" );
+        }
     }
 
-    private byte read()
+    private void arrayRangeCheck( byte[] bytes, int offset, int length )
     {
-        return read( readerIndex++ );
+        if ( offset < 0 || length < 0 || offset + length > bytes.length )
+        {
+            throw new IndexOutOfBoundsException( "Range " + offset + "+" + length + " exceeds array length "
+                + bytes.length );
+        }
     }
 
-    private byte read( long position )
+    private int contiguousLength( int sliceIndex, int relativePosition, int length )
     {
-        if ( position > writerIndex )
+        // Arena slices that are also neighbours in memory are copied in one go
+        int contiguous = sliceByteSize( sliceIndex ) - relativePosition;
+        PartitionSlice slice = slice( sliceIndex );
+        while ( contiguous < length )
         {
-            throw new IndexOutOfBoundsException( "Position " + position + " is not readable" );
+            PartitionSlice next = slice( ++sliceIndex );
+            if ( !UnsafePartitionSlice.adjacent( slice, next ) )
+            {
+                break;
+            }
+            contiguous += sliceByteSize( sliceIndex );
+            slice = next;
         }
-        int sliceIndex = sliceIndex( position );
-        return slices[sliceIndex].read( relativePosition( sliceIndex, position ) );
+        return Math.min( contiguous, length );
     }
 
     private int sliceIndex( long position )
     {
-        return (int) ( position / sliceByteSize() );
+        return sliceLayout.sliceIndex( position );
+    }
+
+    private int sliceByteSize( int sliceIndex )
+    {
+        return sliceLayout.sliceByteSize( sliceIndex );
+    }
+
+    private void ensureSlices( long position, long length )
+    {
+        if ( length == 0 )
+        {
+            return;
+        }
+
+        int lastSliceIndex = sliceIndex( position + length - 1 );
+        if ( lastSliceIndex >= sliceCount )
+        {
+            resize( lastSliceIndex + 1 );
+        }
     }
 
     private synchronized void resize( int newSize )
     {
-        int oldSize = slices.length;
-        PartitionSlice[] temp = new PartitionSlice[newSize];
-        if ( slices != null )
+        int oldSize = sliceCount;
+        if ( newSize <= oldSize )
         {
-            System.arraycopy( slices, 0, temp, 0, slices.length );
+            return;
         }
-        for ( int i = oldSize; i < newSize; i++ )
+
+        // All missing slices are claimed in one batch, large writes don't pay per slice
+        PartitionSlice[] newSlices = new PartitionSlice[newSize - oldSize];
+        partitionBufferPool.requestSlices( newSlices, oldSize, newSlices.length );
+
+        PartitionSlice[][] sliceTable = growSliceTable( newSize );
+        for ( int i = 0; i < newSlices.length; i++ )
         {
-            temp[i] = partitionBufferPool.requestSlice();
+            int sliceIndex = oldSize + i;
+            sliceTable[sliceIndex >>> SLICE_TABLE_CHUNK_SHIFT][sliceIndex & SLICE_TABLE_CHUNK_MASK] = newSlices[i];
         }
-        if ( temp[temp.length - 1] != null )
+        this.sliceTable = sliceTable;
+        sliceCount = newSize;
+    }
+
+    private void shrink( int newSize )
+    {
+        synchronized ( this )
         {
-            slices = temp;
+            int oldSize = sliceCount;
+            if ( newSize >= oldSize )
+            {
+                return;
+            }
+
+            sliceCount = newSize;
+            for ( int sliceIndex = newSize; sliceIndex < oldSize; sliceIndex++ )
+            {
+                partitionBufferPool.freeSlice( slice( sliceIndex ) );
+                sliceTable[sliceIndex >>> SLICE_TABLE_CHUNK_SHIFT][sliceIndex & SLICE_TABLE_CHUNK_MASK] = null;
+            }
         }
+        partitionBufferPool.releasedSlices();
     }
 
-    private int relativePosition( int sliceIndex, long position )
+    private PartitionSlice[][] growSliceTable( int size )
     {
-        if ( sliceIndex == 0 )
+        PartitionSlice[][] sliceTable = this.sliceTable;
+        int chunks = ( size + SLICE_TABLE_CHUNK_MASK ) >>> SLICE_TABLE_CHUNK_SHIFT;
+        if ( chunks > sliceTable.length )
         {
-            return (int) position;
+            sliceTable = Arrays.copyOf( sliceTable, Math.max( chunks, sliceTable.length * 2 ) );
         }
 
-        int sliceByteSize = sliceByteSize();
-        long substract = sliceByteSize * sliceIndex;
-        return ( (int) ( position - substract ) ) & positionMask;
+        PartitionSlice[] firstChunk = sliceTable[0];
+        int firstChunkSize = chunks > 1 ? SLICE_TABLE_CHUNK_SIZE : size;
+        if ( firstChunk.length < firstChunkSize )
+        {
+            int capacity = Math.min( SLICE_TABLE_CHUNK_SIZE, Math.max( firstChunkSize, firstChunk.length * 2 ) );
+            sliceTable[0] = Arrays.copyOf( firstChunk, capacity );
+        }
+        for ( int i = 1; i < chunks; i++ )
+        {
+            if ( sliceTable[i] == null )
+            {
+                sliceTable[i] = new PartitionSlice[SLICE_TABLE_CHUNK_SIZE];
+            }
+        }
+        return sliceTable;
+    }
+
+    private PartitionSlice slice( int sliceIndex )
+    {
+        return sliceTable[sliceIndex >>> SLICE_TABLE_CHUNK_SHIFT][sliceIndex & SLICE_TABLE_CHUNK_MASK];
+    }
+
+    private int relativePosition( long position )
+    {
+        return sliceLayout.relativePosition( position );
     }
 
 }
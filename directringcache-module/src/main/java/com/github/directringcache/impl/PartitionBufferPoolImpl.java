@@ -1,11 +1,27 @@
 package com.github.directringcache.impl;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.Arrays;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.github.directringcache.PartitionBuffer;
+import com.github.directringcache.PartitionBufferCallback;
 import com.github.directringcache.PartitionBufferPool;
-import com.github.directringcache.spi.Partition;
 import com.github.directringcache.spi.PartitionFactory;
 import com.github.directringcache.spi.PartitionSlice;
 import com.github.directringcache.spi.PartitionSliceSelector;
@@ -14,48 +30,340 @@ public class PartitionBufferPoolImpl
     implements PartitionBufferPool
 {
 
-    private final PartitionSliceSelector partitionSliceSelector;
+    private static final int SNAPSHOT_MAGIC = 0x44524353;
 
-    private final Partition[] partitions;
+    private static final int SNAPSHOT_VERSION = 2;
 
-    private final int sliceByteSize;
+    private static final int SNAPSHOT_HEADER_BYTE_SIZE = 4 + 4 + 4 + 4;
 
-    private final int slices;
+    // Live buffers, only tracked for pools that take snapshots since every get and free has to update it
+    private final Set<PartitionBufferImpl> partitionBuffers;
+
+    // FIFO of callers waiting for the pool to free up, guarded by itself
+    private final Deque<PartitionBufferFuture> waiters = new ArrayDeque<PartitionBufferFuture>();
+
+    private final AtomicInteger waiterCount = new AtomicInteger( 0 );
+
+    private boolean dispatching;
+
+    private final SizeClass[] sizeClasses;
+
+    private final SliceLayout sliceLayout;
 
     public PartitionBufferPoolImpl( int partitions, int sliceByteSize, int slices, PartitionFactory partitionFactory,
                                     PartitionSliceSelector partitionSliceSelector )
     {
+        this( partitions, sliceByteSize, slices, 0, partitionFactory, partitionSliceSelector );
+    }
+
+    public PartitionBufferPoolImpl( int partitions, int sliceByteSize, int slices, int magazineDepth,
+                                    PartitionFactory partitionFactory, PartitionSliceSelector partitionSliceSelector )
+    {
+        this( partitions, new int[] { sliceByteSize }, new int[] { slices }, 1, magazineDepth, partitionFactory,
+              new PartitionSliceSelector[] { partitionSliceSelector } );
+    }
+
+    public PartitionBufferPoolImpl( int partitions, int[] sliceByteSizes, int[] slices, int slicesPerSizeClass,
+                                    int magazineDepth, PartitionFactory partitionFactory,
+                                    PartitionSliceSelector[] partitionSliceSelectors )
+    {
+        this( partitions, partitions, 0, sliceByteSizes, slices, slicesPerSizeClass, magazineDepth, partitionFactory,
+              partitionSliceSelectors );
+    }
+
+    public PartitionBufferPoolImpl( int minPartitions, int maxPartitions, long partitionIdleNanos, int[] sliceByteSizes,
+                                    int[] slices, int slicesPerSizeClass, int magazineDepth,
+                                    PartitionFactory partitionFactory, PartitionSliceSelector[] partitionSliceSelectors )
+    {
+        this( minPartitions, maxPartitions, partitionIdleNanos, sliceByteSizes, slices, slicesPerSizeClass,
+              magazineDepth, false, partitionFactory, partitionSliceSelectors );
+    }
 
-        this.partitions = new Partition[partitions];
-        this.partitionSliceSelector = partitionSliceSelector;
-        this.sliceByteSize = sliceByteSize;
-        this.slices = slices;
+    public PartitionBufferPoolImpl( int minPartitions, int maxPartitions, long partitionIdleNanos, int[] sliceByteSizes,
+                                    int[] slices, int slicesPerSizeClass, int magazineDepth, boolean snapshots,
+                                    PartitionFactory partitionFactory, PartitionSliceSelector[] partitionSliceSelectors )
+    {
+        if ( minPartitions < 1 || maxPartitions < minPartitions )
+        {
+            throw new IllegalArgumentException( "minPartitions must be positive and not exceed maxPartitions" );
+        }
+        if ( magazineDepth < 0 )
+        {
+            throw new IllegalArgumentException( "magazineDepth must not be negative" );
+        }
+        if ( slicesPerSizeClass < 1 )
+        {
+            throw new IllegalArgumentException( "slicesPerSizeClass must be positive" );
+        }
+        if ( sliceByteSizes.length == 0 || sliceByteSizes.length != slices.length
+            || sliceByteSizes.length != partitionSliceSelectors.length )
+        {
+            throw new IllegalArgumentException( "sliceByteSizes, slices and partitionSliceSelectors must match up" );
+        }
+        for ( int i = 1; i < sliceByteSizes.length; i++ )
+        {
+            if ( sliceByteSizes[i] <= sliceByteSizes[i - 1] )
+            {
+                throw new IllegalArgumentException( "sliceByteSizes must be strictly ascending" );
+            }
+            for ( int o = 0; o < i; o++ )
+            {
+                if ( partitionSliceSelectors[i] == partitionSliceSelectors[o] )
+                {
+                    throw new IllegalArgumentException( "Every size class needs its own partitionSliceSelector" );
+                }
+            }
+        }
 
-        // Initialize partitions
-        for ( int i = 0; i < partitions; i++ )
+        this.sizeClasses = new SizeClass[sliceByteSizes.length];
+        for ( int i = 0; i < sizeClasses.length; i++ )
         {
-            this.partitions[i] = partitionFactory.newPartition( i, sliceByteSize, slices, partitionSliceSelector );
+            sizeClasses[i] =
+                new SizeClass( minPartitions, maxPartitions, partitionIdleNanos, sliceByteSizes[i], slices[i],
+                               magazineDepth, partitionFactory, partitionSliceSelectors[i] );
         }
+        this.sliceLayout = new SliceLayout( sliceByteSizes, slicesPerSizeClass );
+        this.partitionBuffers =
+            snapshots ? Collections.newSetFromMap( new ConcurrentHashMap<PartitionBufferImpl, Boolean>() ) : null;
     }
 
-    PartitionSlice requestSlice()
+    SliceLayout getSliceLayout()
     {
-        Partition[] partitionsCopy = Arrays.copyOf( partitions, partitions.length );
-        return partitionSliceSelector.selectPartitionSlice( partitionsCopy );
+        return sliceLayout;
+    }
+
+    void requestSlices( PartitionSlice[] slices, int firstSliceIndex, int count )
+    {
+        // Slices of one request may span several size classes, every class run is served by its own partitions
+        int index = firstSliceIndex;
+        int end = firstSliceIndex + count;
+        try
+        {
+            while ( index < end )
+            {
+                int sizeClass = sliceLayout.sizeClass( index );
+                int runEnd = Math.min( end, sliceLayout.sizeClassEnd( sizeClass ) );
+                sizeClasses[sizeClass].requestSlices( slices, index - firstSliceIndex, runEnd - index );
+                index = runEnd;
+            }
+        }
+        catch ( RuntimeException e )
+        {
+            for ( int i = 0; i < index - firstSliceIndex; i++ )
+            {
+                freeSlice( slices[i] );
+                slices[i] = null;
+            }
+            throw e;
+        }
+        finally
+        {
+            // Requests flush and reclaim magazines or hand back partial batches, waiters may be served now
+            dispatchWaiters();
+        }
     }
 
     void freeSlice( PartitionSlice slice )
     {
-        if ( slice != null )
+        if ( slice == null )
         {
-            slice.getPartition().free( slice );
+            return;
         }
+
+        int sliceByteSize = slice.getSliceByteSize();
+        for ( SizeClass sizeClass : sizeClasses )
+        {
+            if ( sizeClass.getSliceByteSize() == sliceByteSize )
+            {
+                sizeClass.freeSlice( slice );
+                return;
+            }
+        }
+        slice.getPartition().free( slice );
+    }
+
+    void unregisterPartitionBuffer( PartitionBufferImpl partitionBuffer )
+    {
+        if ( partitionBuffers != null )
+        {
+            partitionBuffers.remove( partitionBuffer );
+        }
+
+        // The buffer's slices are back in the pool, hand them to waiting callers first
+        dispatchWaiters();
+    }
+
+    void releasedSlices()
+    {
+        // Slices handed back by a buffer that stays alive may serve waiting callers too
+        dispatchWaiters();
+    }
+
+    void removeWaiter( PartitionBufferFuture waiter )
+    {
+        synchronized ( waiters )
+        {
+            if ( waiters.remove( waiter ) )
+            {
+                waiterCount.decrementAndGet();
+            }
+        }
+    }
+
+    private void dispatchWaiters()
+    {
+        if ( waiterCount.get() == 0 )
+        {
+            return;
+        }
+
+        List<PartitionBufferFuture> completed = null;
+        synchronized ( waiters )
+        {
+            // Freeing a buffer of a cancelled waiter below re-enters here
+            if ( dispatching )
+            {
+                return;
+            }
+            dispatching = true;
+            try
+            {
+                while ( !waiters.isEmpty() )
+                {
+                    PartitionBufferFuture waiter = waiters.peekFirst();
+                    if ( waiter.isWaiting() )
+                    {
+                        PartitionBuffer partitionBuffer;
+                        try
+                        {
+                            partitionBuffer = newPartitionBuffer();
+                        }
+                        catch ( RuntimeException e )
+                        {
+                            // Still exhausted, the head keeps its place in line
+                            break;
+                        }
+                        if ( !waiter.complete( partitionBuffer ) )
+                        {
+                            partitionBuffer.free();
+                        }
+                        else if ( waiter.hasCallback() )
+                        {
+                            if ( completed == null )
+                            {
+                                completed = new ArrayList<PartitionBufferFuture>();
+                            }
+                            completed.add( waiter );
+                        }
+                    }
+                    waiters.pollFirst();
+                    waiterCount.decrementAndGet();
+                }
+            }
+            finally
+            {
+                dispatching = false;
+            }
+        }
+
+        if ( completed != null )
+        {
+            for ( PartitionBufferFuture waiter : completed )
+            {
+                waiter.fireCompleted();
+            }
+        }
+    }
+
+    private PartitionBufferImpl newPartitionBuffer()
+    {
+        PartitionBufferImpl partitionBuffer = new PartitionBufferImpl( this, ByteOrder.BIG_ENDIAN );
+        if ( partitionBuffers != null )
+        {
+            partitionBuffers.add( partitionBuffer );
+        }
+        return partitionBuffer;
     }
 
     @Override
     public PartitionBuffer getPartitionBuffer()
     {
-        return new PartitionBufferImpl( this, ByteOrder.BIG_ENDIAN );
+        // Callers that do not wait must not overtake the ones that do
+        if ( waiterCount.get() > 0 )
+        {
+            dispatchWaiters();
+            if ( waiterCount.get() > 0 )
+            {
+                throw new RuntimeException( "Could not retrieve a new partition buffer, callers are waiting" );
+            }
+        }
+        return newPartitionBuffer();
+    }
+
+    @Override
+    public PartitionBuffer getPartitionBuffer( long timeout, TimeUnit timeUnit )
+        throws InterruptedException
+    {
+        PartitionBufferFuture future = enqueuePartitionBufferRequest( null );
+        try
+        {
+            return future.get( timeout, timeUnit );
+        }
+        catch ( TimeoutException e )
+        {
+            // Either we withdraw in time or the buffer was handed to us meanwhile
+            return future.cancel( false ) ? null : future.getNow();
+        }
+        catch ( InterruptedException e )
+        {
+            if ( !future.cancel( false ) )
+            {
+                future.getNow().free();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Future<PartitionBuffer> requestPartitionBuffer()
+    {
+        return enqueuePartitionBufferRequest( null );
+    }
+
+    @Override
+    public Future<PartitionBuffer> requestPartitionBuffer( PartitionBufferCallback callback )
+    {
+        return enqueuePartitionBufferRequest( callback );
+    }
+
+    private PartitionBufferFuture enqueuePartitionBufferRequest( PartitionBufferCallback callback )
+    {
+        PartitionBufferFuture future = new PartitionBufferFuture( this, callback );
+
+        // Callers only take the fast path while nobody is waiting, otherwise they'd overtake the queue
+        if ( waiterCount.get() == 0 )
+        {
+            try
+            {
+                future.complete( newPartitionBuffer() );
+                future.fireCompleted();
+                return future;
+            }
+            catch ( RuntimeException e )
+            {
+                // Exhausted, queue up
+            }
+        }
+
+        synchronized ( waiters )
+        {
+            waiters.addLast( future );
+            waiterCount.incrementAndGet();
+        }
+
+        // Slices might have been freed between the failed attempt and queueing up
+        dispatchWaiters();
+        return future;
     }
 
     @Override
@@ -67,7 +375,12 @@ public class PartitionBufferPoolImpl
     @Override
     public long getAllocatedMemory()
     {
-        return getPartitionCount() * getPartitionByteSize();
+        long allocatedMemory = 0;
+        for ( SizeClass sizeClass : sizeClasses )
+        {
+            allocatedMemory += (long) sizeClass.getSliceCount() * sizeClass.getSliceByteSize();
+        }
+        return allocatedMemory;
     }
 
     @Override
@@ -79,34 +392,44 @@ public class PartitionBufferPoolImpl
     @Override
     public int getPartitionCount()
     {
-        return partitions.length;
+        int partitionCount = 0;
+        for ( SizeClass sizeClass : sizeClasses )
+        {
+            partitionCount += sizeClass.getPartitionCount();
+        }
+        return partitionCount;
     }
 
     @Override
     public int getSliceCountPerPartition()
     {
-        return slices;
+        return sizeClasses[0].getSliceCountPerPartition();
     }
 
     @Override
     public int getSliceCount()
     {
-        return getSliceCountPerPartition() * getPartitionCount();
+        int sliceCount = 0;
+        for ( SizeClass sizeClass : sizeClasses )
+        {
+            sliceCount += sizeClass.getSliceCount();
+        }
+        return sliceCount;
     }
 
     @Override
     public int getSliceByteSize()
     {
-        return sliceByteSize;
+        return sizeClasses[0].getSliceByteSize();
     }
 
     @Override
     public int getUsedSliceCount()
     {
         int usedSlices = 0;
-        for ( Partition partition : partitions )
+        for ( SizeClass sizeClass : sizeClasses )
         {
-            usedSlices += partition.used();
+            usedSlices += sizeClass.getUsedSliceCount();
         }
         return usedSlices;
     }
@@ -114,21 +437,170 @@ public class PartitionBufferPoolImpl
     @Override
     public int getFreeSliceCount()
     {
-        int available = 0;
-        for ( Partition partition : partitions )
+        int freeSlices = 0;
+        for ( SizeClass sizeClass : sizeClasses )
+        {
+            freeSlices += sizeClass.getFreeSliceCount();
+        }
+        return freeSlices;
+    }
+
+    @Override
+    public int getSizeClassCount()
+    {
+        return sizeClasses.length;
+    }
+
+    @Override
+    public int getSliceByteSize( int sizeClass )
+    {
+        return sizeClasses[sizeClass].getSliceByteSize();
+    }
+
+    @Override
+    public int getSliceCount( int sizeClass )
+    {
+        return sizeClasses[sizeClass].getSliceCount();
+    }
+
+    @Override
+    public int getUsedSliceCount( int sizeClass )
+    {
+        return sizeClasses[sizeClass].getUsedSliceCount();
+    }
+
+    @Override
+    public int getFreeSliceCount( int sizeClass )
+    {
+        return sizeClasses[sizeClass].getFreeSliceCount();
+    }
+
+    @Override
+    public void snapshot( File file )
+        throws IOException
+    {
+        if ( partitionBuffers == null )
+        {
+            throw new IllegalStateException( "Snapshots are not enabled for this pool" );
+        }
+
+        // Buffers are not locked, writers have to be quiesced to get a consistent snapshot
+        List<PartitionBufferImpl> snapshotBuffers = new ArrayList<PartitionBufferImpl>( partitionBuffers );
+
+        FileOutputStream outputStream = new FileOutputStream( file );
+        try
         {
-            available += partition.available();
+            FileChannel channel = outputStream.getChannel();
+            ByteBuffer header = ByteBuffer.allocate( SNAPSHOT_HEADER_BYTE_SIZE );
+            header.putInt( SNAPSHOT_MAGIC ).putInt( SNAPSHOT_VERSION );
+            header.putInt( sizeClasses.length ).putInt( snapshotBuffers.size() );
+            header.flip();
+            BufferUtils.writeFully( channel, new ByteBuffer[] { header, sliceByteSizes() } );
+
+            for ( PartitionBufferImpl partitionBuffer : snapshotBuffers )
+            {
+                partitionBuffer.writeSnapshot( channel );
+            }
+            channel.force( false );
+        }
+        finally
+        {
+            outputStream.close();
+        }
+    }
+
+    @Override
+    public List<PartitionBuffer> restore( File file )
+        throws IOException
+    {
+        FileInputStream inputStream = new FileInputStream( file );
+        try
+        {
+            FileChannel channel = inputStream.getChannel();
+            ByteBuffer header = ByteBuffer.allocate( SNAPSHOT_HEADER_BYTE_SIZE );
+            BufferUtils.readFully( channel, new ByteBuffer[] { header } );
+            header.flip();
+
+            if ( header.getInt() != SNAPSHOT_MAGIC || header.getInt() != SNAPSHOT_VERSION )
+            {
+                throw new IOException( "File " + file + " is no partition buffer pool snapshot" );
+            }
+            int snapshotSizeClasses = header.getInt();
+            int bufferCount = header.getInt();
+            if ( snapshotSizeClasses < 1 || snapshotSizeClasses > 32 )
+            {
+                throw new IOException( "File " + file + " is no partition buffer pool snapshot" );
+            }
+            ByteBuffer snapshotSliceByteSizes = ByteBuffer.allocate( snapshotSizeClasses * 4 );
+            BufferUtils.readFully( channel, new ByteBuffer[] { snapshotSliceByteSizes } );
+            snapshotSliceByteSizes.flip();
+            if ( !snapshotSliceByteSizes.equals( sliceByteSizes() ) )
+            {
+                throw new IllegalArgumentException( "Snapshot slice size classes do not match the pool's slice size "
+                    + "classes" );
+            }
+
+            List<PartitionBuffer> restoredBuffers = new ArrayList<PartitionBuffer>( bufferCount );
+            boolean restored = false;
+            try
+            {
+                for ( int i = 0; i < bufferCount; i++ )
+                {
+                    PartitionBufferImpl partitionBuffer = (PartitionBufferImpl) getPartitionBuffer();
+                    restoredBuffers.add( partitionBuffer );
+                    partitionBuffer.readSnapshot( channel );
+                }
+                restored = true;
+            }
+            finally
+            {
+                // A truncated file or an exhausted pool must not leave half restored buffers behind
+                if ( !restored )
+                {
+                    for ( PartitionBuffer partitionBuffer : restoredBuffers )
+                    {
+                        partitionBuffer.free();
+                    }
+                }
+            }
+            return restoredBuffers;
+        }
+        finally
+        {
+            inputStream.close();
         }
-        return available;
     }
 
     @Override
     public void close()
     {
-        for ( Partition partition : partitions )
+        List<PartitionBufferFuture> cancelledWaiters;
+        synchronized ( waiters )
+        {
+            cancelledWaiters = new ArrayList<PartitionBufferFuture>( waiters );
+            waiters.clear();
+            waiterCount.set( 0 );
+        }
+        for ( PartitionBufferFuture waiter : cancelledWaiters )
+        {
+            waiter.cancel( false );
+        }
+
+        for ( SizeClass sizeClass : sizeClasses )
+        {
+            sizeClass.close();
+        }
+    }
+
+    private ByteBuffer sliceByteSizes()
+    {
+        ByteBuffer sliceByteSizes = ByteBuffer.allocate( sizeClasses.length * 4 );
+        for ( SizeClass sizeClass : sizeClasses )
         {
-            partition.close();
+            sliceByteSizes.putInt( sizeClass.getSliceByteSize() );
         }
+        sliceByteSizes.flip();
+        return sliceByteSizes;
     }
 
 }
@@ -0,0 +1,458 @@
+package com.github.directringcache.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.directringcache.spi.Partition;
+import com.github.directringcache.spi.PartitionFactory;
+import com.github.directringcache.spi.PartitionSlice;
+import com.github.directringcache.spi.PartitionSliceSelector;
+
+class SizeClass
+{
+
+    private final PartitionSliceSelector partitionSliceSelector;
+
+    private final PartitionFactory partitionFactory;
+
+    private final int minPartitions;
+
+    private final int maxPartitions;
+
+    private final long partitionIdleNanos;
+
+    private final Object growthLock = new Object();
+
+    private final AtomicLong nextTrimNanos = new AtomicLong( System.nanoTime() );
+
+    // Copy on write, selectors always see a consistent set of live partitions
+    private volatile Partition[] partitions;
+
+    // Indexed by partition index, 0 while the partition is in use or not idle for long
+    private final long[] idleSince;
+
+    private final int sliceByteSize;
+
+    private final int slices;
+
+    private final Set<SliceMagazine> sliceMagazines =
+        Collections.newSetFromMap( new ConcurrentHashMap<SliceMagazine, Boolean>() );
+
+    private final ThreadLocal<SliceMagazine> sliceMagazine;
+
+    private volatile boolean closed;
+
+    SizeClass( int minPartitions, int maxPartitions, long partitionIdleNanos, int sliceByteSize, int slices,
+               final int magazineDepth, PartitionFactory partitionFactory,
+               PartitionSliceSelector partitionSliceSelector )
+    {
+        this.partitions = new Partition[minPartitions];
+        this.partitionFactory = partitionFactory;
+        this.partitionSliceSelector = partitionSliceSelector;
+        this.minPartitions = minPartitions;
+        this.maxPartitions = maxPartitions;
+        this.partitionIdleNanos = partitionIdleNanos;
+        this.idleSince = new long[maxPartitions];
+        this.sliceByteSize = sliceByteSize;
+        this.slices = slices;
+
+        // Initialize partitions
+        for ( int i = 0; i < minPartitions; i++ )
+        {
+            this.partitions[i] = partitionFactory.newPartition( i, sliceByteSize, slices, partitionSliceSelector );
+        }
+
+        if ( magazineDepth == 0 )
+        {
+            this.sliceMagazine = null;
+        }
+        else
+        {
+            this.sliceMagazine = new ThreadLocal<SliceMagazine>()
+            {
+
+                @Override
+                protected SliceMagazine initialValue()
+                {
+                    // Thread pools churn through threads, a new one is a good time to clean up after the old ones
+                    reclaimMagazines();
+                    SliceMagazine sliceMagazine = new SliceMagazine( magazineDepth, Thread.currentThread() );
+                    sliceMagazines.add( sliceMagazine );
+                    return sliceMagazine;
+                }
+            };
+        }
+    }
+
+    void requestSlices( PartitionSlice[] slices, int offset, int count )
+    {
+        trimIdlePartitions();
+
+        int requested = 0;
+        SliceMagazine magazine = ownMagazine();
+        if ( magazine != null )
+        {
+            PartitionSlice slice;
+            while ( requested < count && ( slice = magazine.pop() ) != null )
+            {
+                slices[offset + requested++] = slice;
+            }
+        }
+        if ( requested == count )
+        {
+            return;
+        }
+        if ( magazine != null && refillMagazine( magazine, slices, offset + requested, count - requested ) )
+        {
+            return;
+        }
+
+        try
+        {
+            try
+            {
+                selectSlices( slices, offset + requested, count - requested );
+            }
+            catch ( RuntimeException e )
+            {
+                if ( sliceMagazine == null )
+                {
+                    throw e;
+                }
+                flushMagazines();
+                selectSlices( slices, offset + requested, count - requested );
+            }
+        }
+        catch ( RuntimeException e )
+        {
+            for ( int i = offset; i < offset + requested; i++ )
+            {
+                freeSlice( slices[i] );
+                slices[i] = null;
+            }
+            throw e;
+        }
+    }
+
+    void freeSlice( PartitionSlice slice )
+    {
+        if ( slice == null )
+        {
+            return;
+        }
+
+        SliceMagazine magazine = ownMagazine();
+        if ( magazine == null )
+        {
+            slice.getPartition().free( slice );
+            trimIdlePartitions();
+            return;
+        }
+
+        slice.clear();
+        if ( !magazine.push( slice ) )
+        {
+            // Hand back half of the magazine in one go to not bounce on every following free
+            drainMagazine( magazine, magazine.depth() / 2 );
+            if ( !magazine.push( slice ) )
+            {
+                slice.getPartition().free( slice );
+            }
+        }
+    }
+
+    private SliceMagazine ownMagazine()
+    {
+        if ( sliceMagazine == null || closed )
+        {
+            return null;
+        }
+
+        // Other threads never touch a live magazine, they ask its owner to hand back the slices instead
+        SliceMagazine magazine = sliceMagazine.get();
+        if ( magazine.takeFlushRequest() )
+        {
+            drainMagazine( magazine, magazine.depth() );
+        }
+        return magazine;
+    }
+
+    private boolean refillMagazine( SliceMagazine magazine, PartitionSlice[] slices, int offset, int count )
+    {
+        // Half a magazine on top of the request, so the next allocations of this thread skip the selector
+        PartitionSlice[] refill = new PartitionSlice[count + magazine.depth() / 2];
+        try
+        {
+            selectSlices( refill, 0, refill.length );
+        }
+        catch ( RuntimeException e )
+        {
+            // Pool is running low or slices are parked in other threads' magazines, serve just the request
+            return false;
+        }
+
+        System.arraycopy( refill, 0, slices, offset, count );
+        for ( int i = count; i < refill.length; i++ )
+        {
+            if ( !magazine.push( refill[i] ) )
+            {
+                refill[i].getPartition().free( refill[i] );
+            }
+        }
+        return true;
+    }
+
+    private void selectSlices( PartitionSlice[] slices, int offset, int count )
+    {
+        while ( true )
+        {
+            Partition[] partitions = this.partitions;
+            try
+            {
+                partitionSliceSelector.selectPartitionSlices( Arrays.copyOf( partitions, partitions.length ), count,
+                                                              slices, offset );
+                return;
+            }
+            catch ( RuntimeException e )
+            {
+                if ( !growPartitions( partitions ) )
+                {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private boolean growPartitions( Partition[] seenPartitions )
+    {
+        synchronized ( growthLock )
+        {
+            // Someone else changed the partitions while we were waiting, the caller retries with those first
+            if ( partitions != seenPartitions )
+            {
+                return !closed;
+            }
+            if ( closed || partitions.length >= maxPartitions )
+            {
+                return false;
+            }
+
+            int partitionIndex = 0;
+            for ( Partition partition : partitions )
+            {
+                if ( partition.getPartitionIndex() == partitionIndex )
+                {
+                    partitionIndex++;
+                }
+            }
+            Partition partition =
+                partitionFactory.newPartition( partitionIndex, sliceByteSize, slices, partitionSliceSelector );
+            Partition[] newPartitions = Arrays.copyOf( partitions, partitions.length + 1 );
+            newPartitions[partitions.length] = partition;
+            sortByPartitionIndex( newPartitions );
+            idleSince[partitionIndex] = 0;
+            partitions = newPartitions;
+            return true;
+        }
+    }
+
+    private void trimIdlePartitions()
+    {
+        if ( partitionIdleNanos <= 0 || closed )
+        {
+            return;
+        }
+
+        // Idleness is sampled at half the idle time, only one thread does the sampling
+        long now = System.nanoTime();
+        long nextTrim = nextTrimNanos.get();
+        if ( now - nextTrim < 0 || !nextTrimNanos.compareAndSet( nextTrim, now + partitionIdleNanos / 2 ) )
+        {
+            return;
+        }
+
+        // Slices parked by terminated threads would keep their partitions from ever going idle
+        reclaimMagazines();
+
+        synchronized ( growthLock )
+        {
+            for ( Partition partition : partitions )
+            {
+                int partitionIndex = partition.getPartitionIndex();
+                if ( partition.used() > 0 || !partition.isPooled() )
+                {
+                    idleSince[partitionIndex] = 0;
+                }
+                else if ( idleSince[partitionIndex] == 0 )
+                {
+                    idleSince[partitionIndex] = now | 1;
+                }
+                else if ( now - idleSince[partitionIndex] >= partitionIdleNanos && partitions.length > minPartitions )
+                {
+                    retirePartition( partition );
+                }
+            }
+        }
+    }
+
+    private void retirePartition( Partition partition )
+    {
+        // Claiming every slice fences off selectors that still hold the old partitions array
+        PartitionSlice[] claimed = new PartitionSlice[partition.getSliceCount()];
+        int count = partition.get( claimed.length, claimed, 0 );
+        if ( count < claimed.length )
+        {
+            for ( int i = 0; i < count; i++ )
+            {
+                partition.free( claimed[i] );
+            }
+            idleSince[partition.getPartitionIndex()] = 0;
+            return;
+        }
+
+        Partition[] newPartitions = new Partition[partitions.length - 1];
+        int index = 0;
+        for ( Partition candidate : partitions )
+        {
+            if ( candidate != partition )
+            {
+                newPartitions[index++] = candidate;
+            }
+        }
+        partitions = newPartitions;
+        idleSince[partition.getPartitionIndex()] = 0;
+        partition.close();
+    }
+
+    private void sortByPartitionIndex( Partition[] partitions )
+    {
+        for ( int i = 1; i < partitions.length; i++ )
+        {
+            Partition partition = partitions[i];
+            int o = i - 1;
+            while ( o >= 0 && partitions[o].getPartitionIndex() > partition.getPartitionIndex() )
+            {
+                partitions[o + 1] = partitions[o];
+                o--;
+            }
+            partitions[o + 1] = partition;
+        }
+    }
+
+    private void drainMagazine( SliceMagazine magazine, int count )
+    {
+        PartitionSlice[] drained = new PartitionSlice[count];
+        int size = magazine.drain( drained, count );
+        for ( int i = 0; i < size; i++ )
+        {
+            drained[i].getPartition().free( drained[i] );
+        }
+    }
+
+    private void reclaimMagazines()
+    {
+        if ( sliceMagazine == null )
+        {
+            return;
+        }
+
+        // A terminated owner never pops again, so its magazine is dropped and its slices go back to the partitions
+        for ( SliceMagazine magazine : sliceMagazines )
+        {
+            // Only the thread that removes the magazine drains it
+            if ( !magazine.isOwnerAlive() && sliceMagazines.remove( magazine ) )
+            {
+                drainMagazine( magazine, magazine.depth() );
+            }
+        }
+    }
+
+    private void flushMagazines()
+    {
+        reclaimMagazines();
+        Thread thread = Thread.currentThread();
+        for ( SliceMagazine magazine : sliceMagazines )
+        {
+            if ( magazine.isOwnedBy( thread ) )
+            {
+                drainMagazine( magazine, magazine.depth() );
+            }
+            else
+            {
+                // Picked up with the owner's next allocation or free
+                magazine.requestFlush();
+            }
+        }
+    }
+
+    private int magazineSliceCount()
+    {
+        int count = 0;
+        for ( SliceMagazine magazine : sliceMagazines )
+        {
+            count += magazine.size();
+        }
+        return count;
+    }
+
+    int getSliceByteSize()
+    {
+        return sliceByteSize;
+    }
+
+    int getPartitionCount()
+    {
+        return partitions.length;
+    }
+
+    int getSliceCountPerPartition()
+    {
+        return slices;
+    }
+
+    int getSliceCount()
+    {
+        return slices * partitions.length;
+    }
+
+    int getUsedSliceCount()
+    {
+        int usedSlices = 0;
+        for ( Partition partition : partitions )
+        {
+            usedSlices += partition.used();
+        }
+        return usedSlices - magazineSliceCount();
+    }
+
+    int getFreeSliceCount()
+    {
+        int available = 0;
+        for ( Partition partition : partitions )
+        {
+            available += partition.available();
+        }
+        return available + magazineSliceCount();
+    }
+
+    void close()
+    {
+        Partition[] partitions;
+        synchronized ( growthLock )
+        {
+            closed = true;
+            partitions = this.partitions;
+        }
+
+        // Slices still parked in live magazines are released with their partitions
+        reclaimMagazines();
+        for ( Partition partition : partitions )
+        {
+            partition.close();
+        }
+    }
+
+}
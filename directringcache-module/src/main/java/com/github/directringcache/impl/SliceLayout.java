@@ -0,0 +1,100 @@
+package com.github.directringcache.impl;
+
+class SliceLayout
+{
+
+    private final int[] sliceByteSizes;
+
+    private final int[] sliceShifts;
+
+    private final long[] sizeClassOffsets;
+
+    private final int slicesPerSizeClass;
+
+    private final int lastSizeClass;
+
+    private final int sliceShift;
+
+    private final long positionMask;
+
+    SliceLayout( int[] sliceByteSizes, int slicesPerSizeClass )
+    {
+        this.sliceByteSizes = sliceByteSizes.clone();
+        this.slicesPerSizeClass = slicesPerSizeClass;
+        this.lastSizeClass = sliceByteSizes.length - 1;
+        this.sliceShifts = new int[sliceByteSizes.length];
+        this.sizeClassOffsets = new long[sliceByteSizes.length];
+
+        // A buffer uses slicesPerSizeClass slices of every class before it steps up to the next larger one
+        long offset = 0;
+        for ( int i = 0; i < sliceByteSizes.length; i++ )
+        {
+            sliceShifts[i] = Integer.numberOfTrailingZeros( sliceByteSizes[i] );
+            sizeClassOffsets[i] = offset;
+            offset += (long) sliceByteSizes[i] * slicesPerSizeClass;
+        }
+        this.sliceShift = sliceShifts[0];
+        this.positionMask = sliceByteSizes[0] - 1;
+    }
+
+    int sliceIndex( long position )
+    {
+        if ( lastSizeClass == 0 )
+        {
+            return (int) ( position >>> sliceShift );
+        }
+
+        int sizeClass = sizeClassOfPosition( position );
+        return sizeClass * slicesPerSizeClass
+            + (int) ( ( position - sizeClassOffsets[sizeClass] ) >>> sliceShifts[sizeClass] );
+    }
+
+    int relativePosition( long position )
+    {
+        if ( lastSizeClass == 0 )
+        {
+            return (int) ( position & positionMask );
+        }
+
+        int sizeClass = sizeClassOfPosition( position );
+        return (int) ( ( position - sizeClassOffsets[sizeClass] ) & ( sliceByteSizes[sizeClass] - 1 ) );
+    }
+
+    int sliceByteSize( int sliceIndex )
+    {
+        return sliceByteSizes[sizeClass( sliceIndex )];
+    }
+
+    int sizeClass( int sliceIndex )
+    {
+        return lastSizeClass == 0 ? 0 : Math.min( sliceIndex / slicesPerSizeClass, lastSizeClass );
+    }
+
+    int sizeClassEnd( int sizeClass )
+    {
+        return sizeClass == lastSizeClass ? Integer.MAX_VALUE : ( sizeClass + 1 ) * slicesPerSizeClass;
+    }
+
+    long capacity( int sliceCount )
+    {
+        if ( lastSizeClass == 0 )
+        {
+            return (long) sliceCount << sliceShift;
+        }
+
+        int sizeClass = Math.min( sliceCount / slicesPerSizeClass, lastSizeClass );
+        return sizeClassOffsets[sizeClass] + (long) ( sliceCount - sizeClass * slicesPerSizeClass )
+            * sliceByteSizes[sizeClass];
+    }
+
+    private int sizeClassOfPosition( long position )
+    {
+        int sizeClass = 0;
+        while ( sizeClass < lastSizeClass && position >= sizeClassOffsets[sizeClass + 1] )
+        {
+            sizeClass++;
+        }
+        return sizeClass;
+    }
+
+}
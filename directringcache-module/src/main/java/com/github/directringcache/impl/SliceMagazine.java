@@ -0,0 +1,95 @@
+package com.github.directringcache.impl;
+
+import java.lang.ref.WeakReference;
+
+import com.github.directringcache.spi.PartitionSlice;
+
+class SliceMagazine
+{
+
+    private final PartitionSlice[] slices;
+
+    // Weak so the pool does not keep terminated threads reachable
+    private final WeakReference<Thread> owner;
+
+    // Plain field, only the owner writes it, statistics read it without a happens-before edge
+    private int size;
+
+    private volatile boolean flushRequested;
+
+    SliceMagazine( int depth, Thread owner )
+    {
+        this.slices = new PartitionSlice[depth];
+        this.owner = new WeakReference<Thread>( owner );
+    }
+
+    boolean isOwnerAlive()
+    {
+        Thread thread = owner.get();
+        return thread != null && thread.isAlive();
+    }
+
+    boolean isOwnedBy( Thread thread )
+    {
+        return owner.get() == thread;
+    }
+
+    void requestFlush()
+    {
+        flushRequested = true;
+    }
+
+    boolean takeFlushRequest()
+    {
+        if ( !flushRequested )
+        {
+            return false;
+        }
+        flushRequested = false;
+        return true;
+    }
+
+    // Slots are only touched by the owner, other threads drain a magazine once its owner terminated
+    PartitionSlice pop()
+    {
+        if ( size == 0 )
+        {
+            return null;
+        }
+        PartitionSlice slice = slices[--size];
+        slices[size] = null;
+        return slice;
+    }
+
+    boolean push( PartitionSlice slice )
+    {
+        if ( size == slices.length )
+        {
+            return false;
+        }
+        slices[size++] = slice;
+        return true;
+    }
+
+    int drain( PartitionSlice[] target, int count )
+    {
+        int drained = Math.min( count, size );
+        for ( int i = 0; i < drained; i++ )
+        {
+            target[i] = slices[--size];
+            slices[size] = null;
+        }
+        return drained;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    int depth()
+    {
+        return slices.length;
+    }
+
+}
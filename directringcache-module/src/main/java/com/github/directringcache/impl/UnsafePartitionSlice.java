@@ -1,11 +1,14 @@
 package com.github.directringcache.impl;
 
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.directringcache.spi.Partition;
+import com.github.directringcache.spi.PartitionSlice;
 
 @SuppressWarnings( "restriction" )
 class UnsafePartitionSlice
@@ -26,6 +29,8 @@ class UnsafePartitionSlice
 
     final long lastMemoryPointer;
 
+    private final boolean ownsMemory;
+
     private volatile int writerIndex;
 
     private volatile int readerIndex;
@@ -38,9 +43,40 @@ class UnsafePartitionSlice
         this.sliceByteSize = sliceByteSize;
         this.memoryPointer = unsafe.allocateMemory( sliceByteSize );
         this.lastMemoryPointer = memoryPointer + sliceByteSize - 1;
+        this.ownsMemory = true;
         clear();
     }
 
+    UnsafePartitionSlice( int index, Partition partition, int sliceByteSize, long memoryPointer )
+    {
+        super( index );
+
+        // Memory is part of an already cleared arena owned by the partition
+        this.partition = partition;
+        this.sliceByteSize = sliceByteSize;
+        this.memoryPointer = memoryPointer;
+        this.lastMemoryPointer = memoryPointer + sliceByteSize - 1;
+        this.ownsMemory = false;
+    }
+
+    static boolean adjacent( PartitionSlice slice, PartitionSlice next )
+    {
+        return slice instanceof UnsafePartitionSlice && next instanceof UnsafePartitionSlice
+            && ( (UnsafePartitionSlice) slice ).lastMemoryPointer + 1 == ( (UnsafePartitionSlice) next ).memoryPointer;
+    }
+
+    // Callers have to make sure the whole range only spans adjacent slices
+
+    void putContiguous( int position, byte[] array, int offset, int length )
+    {
+        unsafe.copyMemory( array, BufferUtils.BYTE_ARRAY_OFFSET + offset, null, memoryPointer + position, length );
+    }
+
+    void readContiguous( int position, byte[] array, int offset, int length )
+    {
+        unsafe.copyMemory( null, memoryPointer + position, array, BufferUtils.BYTE_ARRAY_OFFSET + offset, length );
+    }
+
     @Override
     public void clear()
     {
@@ -68,20 +104,140 @@ class UnsafePartitionSlice
     @Override
     public void put( byte[] array, int offset, int length )
     {
-        if ( writerAddress() + length - 1 > lastMemoryPointer )
+        put( writerIndex, array, offset, length );
+        writerIndex += length;
+    }
+
+    @Override
+    public void put( int position, byte[] array, int offset, int length )
+    {
+        if ( memoryPointer + position + length - 1 > lastMemoryPointer )
         {
             throw new IndexOutOfBoundsException( "Writing the array exhausted the available size" );
         }
 
         if ( LOGGER.isTraceEnabled() )
         {
-            LOGGER.trace( "partition=" + partition.getPartitionIndex() + ", sliceIndex=" + index + ", writerIndex="
-                + writerIndex + ", offset=" + offset + ", arrayLength=" + array.length + ", writeLength=" + length
-                + ", writerAddress=" + ( memoryPointer + writerIndex ) );
+            LOGGER.trace( "partition=" + partition.getPartitionIndex() + ", sliceIndex=" + index + ", position="
+                + position + ", offset=" + offset + ", arrayLength=" + array.length + ", writeLength=" + length
+                + ", writerAddress=" + ( memoryPointer + position ) );
         }
-        long memOffset = memoryPointer + readerIndex;
+        long memOffset = memoryPointer + position;
         unsafe.copyMemory( array, BufferUtils.BYTE_ARRAY_OFFSET + offset, null, memOffset, length );
-        writerIndex += length;
+    }
+
+    @Override
+    public void put( int position, PartitionSlice source, int sourcePosition, int length )
+    {
+        if ( !( source instanceof UnsafePartitionSlice ) )
+        {
+            copyThroughArray( position, source, sourcePosition, length );
+            return;
+        }
+
+        UnsafePartitionSlice sourceSlice = (UnsafePartitionSlice) source;
+        if ( memoryPointer + position + length - 1 > lastMemoryPointer
+            || sourceSlice.memoryPointer + sourcePosition + length - 1 > sourceSlice.lastMemoryPointer )
+        {
+            throw new IndexOutOfBoundsException( "Copying the slice exhausted the available size" );
+        }
+        unsafe.copyMemory( null, sourceSlice.memoryPointer + sourcePosition, null, memoryPointer + position, length );
+    }
+
+    @Override
+    public void put( int position, ByteBuffer source )
+    {
+        int length = source.remaining();
+        if ( memoryPointer + position + length - 1 > lastMemoryPointer )
+        {
+            throw new IndexOutOfBoundsException( "Writing the buffer exhausted the available size" );
+        }
+
+        long memOffset = memoryPointer + position;
+        if ( BufferUtils.isDirectBufferAddressAvailable( source ) )
+        {
+            long sourceAddress = BufferUtils.directBufferAddress( source ) + source.position();
+            unsafe.copyMemory( null, sourceAddress, null, memOffset, length );
+        }
+        else if ( source.hasArray() )
+        {
+            long arrayOffset = BufferUtils.BYTE_ARRAY_OFFSET + source.arrayOffset() + source.position();
+            unsafe.copyMemory( source.array(), arrayOffset, null, memOffset, length );
+        }
+        else
+        {
+            for ( int i = 0; i < length; i++ )
+            {
+                unsafe.putByte( memOffset + i, source.get( source.position() + i ) );
+            }
+        }
+        source.position( source.position() + length );
+    }
+
+    @Override
+    public void putShort( short value )
+    {
+        putShort( writerIndex, value );
+        writerIndex += 2;
+    }
+
+    @Override
+    public void putShort( int position, short value )
+    {
+        if ( BufferUtils.UNALIGNED_ACCESS || ( position & 1 ) == 0 )
+        {
+            short data = BufferUtils.NATIVE_BIG_ENDIAN ? value : Short.reverseBytes( value );
+            unsafe.putShort( memoryPointer + position, data );
+        }
+        else
+        {
+            put( position, (byte) ( value >> 8 ) );
+            put( position + 1, (byte) value );
+        }
+    }
+
+    @Override
+    public void putInt( int value )
+    {
+        putInt( writerIndex, value );
+        writerIndex += 4;
+    }
+
+    @Override
+    public void putInt( int position, int value )
+    {
+        if ( BufferUtils.UNALIGNED_ACCESS || ( position & 3 ) == 0 )
+        {
+            int data = BufferUtils.NATIVE_BIG_ENDIAN ? value : Integer.reverseBytes( value );
+            unsafe.putInt( memoryPointer + position, data );
+        }
+        else
+        {
+            putShort( position, (short) ( value >>> 16 ) );
+            putShort( position + 2, (short) value );
+        }
+    }
+
+    @Override
+    public void putLong( long value )
+    {
+        putLong( writerIndex, value );
+        writerIndex += 8;
+    }
+
+    @Override
+    public void putLong( int position, long value )
+    {
+        if ( BufferUtils.UNALIGNED_ACCESS || ( position & 7 ) == 0 )
+        {
+            long data = BufferUtils.NATIVE_BIG_ENDIAN ? value : Long.reverseBytes( value );
+            unsafe.putLong( memoryPointer + position, data );
+        }
+        else
+        {
+            putInt( position, (int) ( value >>> 32 ) );
+            putInt( position + 4, (int) value );
+        }
     }
 
     @Override
@@ -99,20 +255,128 @@ class UnsafePartitionSlice
     @Override
     public void read( byte[] array, int offset, int length )
     {
-        if ( readerAddress() + length - 1 > lastMemoryPointer )
+        read( readerIndex, array, offset, length );
+        readerIndex += length;
+    }
+
+    @Override
+    public void read( int position, byte[] array, int offset, int length )
+    {
+        if ( memoryPointer + position + length - 1 > lastMemoryPointer )
         {
             throw new IndexOutOfBoundsException( "Reading the array exhausted the available size" );
         }
 
         if ( LOGGER.isTraceEnabled() )
         {
-            LOGGER.trace( "partition=" + partition.getPartitionIndex() + ", sliceIndex=" + index + ", readerIndex="
-                + readerIndex + ", offset=" + offset + ", arrayLength=" + array.length + ", readLength=" + length
-                + ", readerAddress=" + ( memoryPointer + readerIndex ) );
+            LOGGER.trace( "partition=" + partition.getPartitionIndex() + ", sliceIndex=" + index + ", position="
+                + position + ", offset=" + offset + ", arrayLength=" + array.length + ", readLength=" + length
+                + ", readerAddress=" + ( memoryPointer + position ) );
         }
-        long memOffset = memoryPointer + readerIndex;
+        long memOffset = memoryPointer + position;
         unsafe.copyMemory( null, memOffset, array, BufferUtils.BYTE_ARRAY_OFFSET + offset, length );
-        readerIndex += length;
+    }
+
+    @Override
+    public void read( int position, ByteBuffer target )
+    {
+        if ( target.isReadOnly() )
+        {
+            throw new ReadOnlyBufferException();
+        }
+
+        int length = target.remaining();
+        if ( memoryPointer + position + length - 1 > lastMemoryPointer )
+        {
+            throw new IndexOutOfBoundsException( "Reading the buffer exhausted the available size" );
+        }
+
+        long memOffset = memoryPointer + position;
+        if ( BufferUtils.isDirectBufferAddressAvailable( target ) )
+        {
+            long targetAddress = BufferUtils.directBufferAddress( target ) + target.position();
+            unsafe.copyMemory( null, memOffset, null, targetAddress, length );
+        }
+        else if ( target.hasArray() )
+        {
+            long arrayOffset = BufferUtils.BYTE_ARRAY_OFFSET + target.arrayOffset() + target.position();
+            unsafe.copyMemory( null, memOffset, target.array(), arrayOffset, length );
+        }
+        else
+        {
+            for ( int i = 0; i < length; i++ )
+            {
+                target.put( target.position() + i, unsafe.getByte( memOffset + i ) );
+            }
+        }
+        target.position( target.position() + length );
+    }
+
+    @Override
+    public ByteBuffer byteBuffer( int position, int length )
+    {
+        if ( position < 0 || length < 0 || memoryPointer + position + length - 1 > lastMemoryPointer )
+        {
+            throw new IndexOutOfBoundsException( "View exceeds the available size" );
+        }
+        return BufferUtils.wrapAddress( memoryPointer + position, length );
+    }
+
+    @Override
+    public short getShort()
+    {
+        short value = getShort( readerIndex );
+        readerIndex += 2;
+        return value;
+    }
+
+    @Override
+    public short getShort( int position )
+    {
+        if ( BufferUtils.UNALIGNED_ACCESS || ( position & 1 ) == 0 )
+        {
+            short value = unsafe.getShort( memoryPointer + position );
+            return BufferUtils.NATIVE_BIG_ENDIAN ? value : Short.reverseBytes( value );
+        }
+        return (short) ( ( read( position ) & 0xFF ) << 8 | ( read( position + 1 ) & 0xFF ) );
+    }
+
+    @Override
+    public int getInt()
+    {
+        int value = getInt( readerIndex );
+        readerIndex += 4;
+        return value;
+    }
+
+    @Override
+    public int getInt( int position )
+    {
+        if ( BufferUtils.UNALIGNED_ACCESS || ( position & 3 ) == 0 )
+        {
+            int value = unsafe.getInt( memoryPointer + position );
+            return BufferUtils.NATIVE_BIG_ENDIAN ? value : Integer.reverseBytes( value );
+        }
+        return ( getShort( position ) & 0xFFFF ) << 16 | ( getShort( position + 2 ) & 0xFFFF );
+    }
+
+    @Override
+    public long getLong()
+    {
+        long value = getLong( readerIndex );
+        readerIndex += 8;
+        return value;
+    }
+
+    @Override
+    public long getLong( int position )
+    {
+        if ( BufferUtils.UNALIGNED_ACCESS || ( position & 7 ) == 0 )
+        {
+            long value = unsafe.getLong( memoryPointer + position );
+            return BufferUtils.NATIVE_BIG_ENDIAN ? value : Long.reverseBytes( value );
+        }
+        return ( getInt( position ) & 0xFFFFFFFFL ) << 32 | ( getInt( position + 4 ) & 0xFFFFFFFFL );
     }
 
     @Override
@@ -165,20 +429,10 @@ class UnsafePartitionSlice
         return partition;
     }
 
-    private long readerAddress()
-    {
-        return memoryPointer + readerIndex;
-    }
-
-    private long writerAddress()
-    {
-        return memoryPointer + writerIndex;
-    }
-
     @Override
     protected void free()
     {
-        if ( freed.compareAndSet( false, true ) )
+        if ( !freed.compareAndSet( false, true ) || !ownsMemory )
         {
             return;
         }
@@ -7,6 +7,7 @@ import com.github.directringcache.spi.Partition;
 import com.github.directringcache.spi.PartitionFactory;
 import com.github.directringcache.spi.PartitionSliceSelector;
 
+@SuppressWarnings( "restriction" )
 public class UnsafePooledPartition
     extends AbstractPooledPartition
 {
@@ -18,32 +19,76 @@ public class UnsafePooledPartition
         public Partition newPartition( int partitionIndex, int sliceByteSize, int slices,
                                        PartitionSliceSelector partitionSliceSelector )
         {
-            return new UnsafePooledPartition( partitionIndex, slices, sliceByteSize, partitionSliceSelector );
+            return new UnsafePooledPartition( partitionIndex, slices, sliceByteSize, 0, partitionSliceSelector );
         }
     };
 
+    public static final int DEFAULT_ARENA_ALIGNMENT = 4096;
+
+    public static final PartitionFactory UNSAFE_ARENA_PARTITION_FACTORY =
+        unsafeArenaPartitionFactory( DEFAULT_ARENA_ALIGNMENT );
+
+    public static PartitionFactory unsafeArenaPartitionFactory( final int alignment )
+    {
+        if ( alignment <= 0 || !BufferUtils.isPowerOfTwo( alignment ) )
+        {
+            throw new IllegalArgumentException( "alignment is not a power of 2" );
+        }
+
+        return new PartitionFactory()
+        {
+
+            @Override
+            public Partition newPartition( int partitionIndex, int sliceByteSize, int slices,
+                                           PartitionSliceSelector partitionSliceSelector )
+            {
+                return new UnsafePooledPartition( partitionIndex, slices, sliceByteSize, alignment,
+                                                  partitionSliceSelector );
+            }
+        };
+    }
+
     private static final Logger LOGGER = LoggerFactory.getLogger( UnsafePooledPartition.class );
 
+    private final sun.misc.Unsafe unsafe = BufferUtils.getUnsafe();
+
     private final long allocatedLength;
 
     private final UnsafePartitionSlice[] slices;
 
-    private UnsafePooledPartition( int partitionIndex, int slices, int sliceByteSize,
+    private final long arenaMemoryPointer;
+
+    private UnsafePooledPartition( int partitionIndex, int slices, int sliceByteSize, int arenaAlignment,
                                    PartitionSliceSelector partitionSliceSelector )
     {
         super( partitionIndex, slices, sliceByteSize, partitionSliceSelector, true );
 
         this.slices = new UnsafePartitionSlice[slices];
-        this.allocatedLength = sliceByteSize * slices;
+        this.allocatedLength = (long) sliceByteSize * slices;
 
         if ( LOGGER.isTraceEnabled() )
         {
             LOGGER.trace( "malloc data: partitionIndex=" + partitionIndex + ", allocatedLength=" + allocatedLength );
         }
 
+        long arenaBase = 0;
+        if ( arenaAlignment > 0 )
+        {
+            // One allocation for the whole partition, over-allocated to align the first slice
+            arenaMemoryPointer = unsafe.allocateMemory( allocatedLength + arenaAlignment - 1 );
+            arenaBase = ( arenaMemoryPointer + arenaAlignment - 1 ) & -arenaAlignment;
+            unsafe.setMemory( arenaBase, allocatedLength, (byte) 0 );
+        }
+        else
+        {
+            arenaMemoryPointer = 0;
+        }
+
         for ( int i = 0; i < slices; i++ )
         {
-            this.slices[i] = new UnsafePartitionSlice( i, this, sliceByteSize );
+            this.slices[i] =
+                arenaAlignment > 0 ? new UnsafePartitionSlice( i, this, sliceByteSize, arenaBase + (long) i
+                    * sliceByteSize ) : new UnsafePartitionSlice( i, this, sliceByteSize );
 
             if ( LOGGER.isTraceEnabled() )
             {
@@ -54,6 +99,22 @@ public class UnsafePooledPartition
         }
     }
 
+    @Override
+    public void close()
+    {
+        // Only the closing thread that wins may free the arena, a second free corrupts the native heap
+        if ( !close0() )
+        {
+            return;
+        }
+
+        freeSlices();
+        if ( arenaMemoryPointer != 0 )
+        {
+            unsafe.freeMemory( arenaMemoryPointer );
+        }
+    }
+
     @Override
     protected AbstractPartitionSlice get( int index )
     {
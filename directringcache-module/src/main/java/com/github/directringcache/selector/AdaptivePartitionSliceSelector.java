@@ -0,0 +1,355 @@
+package com.github.directringcache.selector;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.directringcache.spi.Partition;
+import com.github.directringcache.spi.PartitionSlice;
+import com.github.directringcache.spi.PartitionSliceSelector;
+
+public class AdaptivePartitionSliceSelector
+    implements PartitionSliceSelector
+{
+
+    // Acquisitions of a thread between two looks at the contention of its partition
+    private static final int SAMPLE_INTERVAL = 64;
+
+    // Heat a partition has to reach before threads are moved off it, about 4 contention events per sample
+    private static final long HOT_THRESHOLD = 16;
+
+    private final Set<Binding> liveBindings = Collections.newSetFromMap( new ConcurrentHashMap<Binding, Boolean>() );
+
+    private final ThreadLocal<Binding> bindings = new ThreadLocal<Binding>()
+    {
+
+        @Override
+        protected Binding initialValue()
+        {
+            // Thread pools churn through threads, a new one is a good time to clean up after the old ones
+            reclaimBindings();
+            Binding binding = new Binding( Thread.currentThread() );
+            liveBindings.add( binding );
+            return binding;
+        }
+    };
+
+    private final AtomicLong bindCount = new AtomicLong();
+
+    private final AtomicLong rebindCount = new AtomicLong();
+
+    private final AtomicLong collisionCount = new AtomicLong();
+
+    private final AtomicLong reclaimCount = new AtomicLong();
+
+    // Load of every partition, tracked by partition index since pools may add or retire partitions
+    private volatile PartitionLoad[] loads = new PartitionLoad[0];
+
+    @Override
+    public PartitionSlice selectPartitionSlice( Partition[] partitions )
+    {
+        Binding binding = bindings.get();
+        Partition partition = bound( partitions, binding );
+
+        for ( int attempt = 0; attempt < partitions.length; attempt++ )
+        {
+            if ( partition.available() > 0 )
+            {
+                PartitionSlice slice = partition.get();
+                if ( slice != null )
+                {
+                    return slice;
+                }
+
+                // Lost the race for the last free slices
+                load( partition ).failures.incrementAndGet();
+                collisionCount.incrementAndGet();
+            }
+
+            Partition target = coldest( partitions, partition );
+            if ( target == null )
+            {
+                break;
+            }
+            partition = rebind( binding, target );
+        }
+
+        throw new RuntimeException( "Could not retrieve a new partition slice" );
+    }
+
+    @Override
+    public void selectPartitionSlices( Partition[] partitions, int count, PartitionSlice[] slices, int offset )
+    {
+        Binding binding = bindings.get();
+        Partition partition = bound( partitions, binding );
+
+        int selected = 0;
+        try
+        {
+            if ( partition.available() > 0 )
+            {
+                selected += partition.get( count, slices, offset );
+            }
+            while ( selected < count )
+            {
+                // Moves the binding on to a colder partition
+                slices[offset + selected++] = selectPartitionSlice( partitions );
+                partition = binding.partition;
+                if ( selected < count && partition.available() > 0 )
+                {
+                    selected += partition.get( count - selected, slices, offset + selected );
+                }
+            }
+        }
+        catch ( RuntimeException e )
+        {
+            SelectorUtils.releasePartitionSlices( slices, offset, selected );
+            throw e;
+        }
+    }
+
+    @Override
+    public void freePartitionSlice( Partition partition, int partitionIndex, PartitionSlice slice )
+    {
+    }
+
+    public long getBindCount()
+    {
+        return bindCount.get();
+    }
+
+    public long getRebindCount()
+    {
+        return rebindCount.get();
+    }
+
+    public long getCollisionCount()
+    {
+        return collisionCount.get();
+    }
+
+    public long getReclaimCount()
+    {
+        return reclaimCount.get();
+    }
+
+    public int[] getBoundThreadCounts()
+    {
+        PartitionLoad[] loads = this.loads;
+        int[] boundThreadCounts = new int[loads.length];
+        for ( int i = 0; i < loads.length; i++ )
+        {
+            boundThreadCounts[i] = loads[i] == null ? 0 : loads[i].boundThreads.get();
+        }
+        return boundThreadCounts;
+    }
+
+    private Partition bound( Partition[] partitions, Binding binding )
+    {
+        Partition partition = binding.partition;
+        if ( partition == null || partition.isClosed() )
+        {
+            // First use of this thread or its partition was retired by the pool
+            Partition target = coldest( partitions, null );
+            if ( target == null )
+            {
+                target = partitions[0];
+            }
+            bindCount.incrementAndGet();
+            return bind( binding, target );
+        }
+
+        if ( ++binding.acquisitions >= SAMPLE_INTERVAL )
+        {
+            binding.acquisitions = 0;
+            PartitionLoad load = load( partition );
+            if ( load.sample( partition ) >= HOT_THRESHOLD && load.boundThreads.get() > 1 )
+            {
+                Partition target = coldest( partitions, partition );
+                if ( target != null && isWorthMoving( load( target ), load ) )
+                {
+                    return rebind( binding, target );
+                }
+            }
+        }
+        return partition;
+    }
+
+    private Partition rebind( Binding binding, Partition target )
+    {
+        rebindCount.incrementAndGet();
+        return bind( binding, target );
+    }
+
+    private Partition bind( Binding binding, Partition target )
+    {
+        // The binding keeps its own load, the index may already belong to a replacement of its partition
+        if ( binding.load != null )
+        {
+            binding.load.boundThreads.decrementAndGet();
+        }
+        PartitionLoad load = load( target );
+        load.boundThreads.incrementAndGet();
+        binding.partition = target;
+        binding.load = load;
+        binding.acquisitions = 0;
+        return target;
+    }
+
+    private void reclaimBindings()
+    {
+        for ( Binding binding : liveBindings )
+        {
+            // Only the thread that removes a binding gives back its place
+            if ( !binding.isAlive() && liveBindings.remove( binding ) && binding.load != null )
+            {
+                binding.load.boundThreads.decrementAndGet();
+                reclaimCount.incrementAndGet();
+            }
+        }
+    }
+
+    private Partition coldest( Partition[] partitions, Partition current )
+    {
+        Partition coldest = null;
+        PartitionLoad coldestLoad = null;
+        for ( Partition partition : partitions )
+        {
+            if ( partition == current || partition.available() == 0 )
+            {
+                continue;
+            }
+            PartitionLoad load = load( partition );
+            load.sample( partition );
+            if ( coldest == null || compare( partition, load, coldest, coldestLoad ) < 0 )
+            {
+                coldest = partition;
+                coldestLoad = load;
+            }
+        }
+        return coldest;
+    }
+
+    private static int compare( Partition partition, PartitionLoad load, Partition other, PartitionLoad otherLoad )
+    {
+        // Fewest bound threads first, recent contention second, free slices last
+        int boundThreads = load.boundThreads.get() - otherLoad.boundThreads.get();
+        if ( boundThreads != 0 )
+        {
+            return boundThreads;
+        }
+        if ( load.heat != otherLoad.heat )
+        {
+            return load.heat < otherLoad.heat ? -1 : 1;
+        }
+        return other.available() - partition.available();
+    }
+
+    private static boolean isWorthMoving( PartitionLoad target, PartitionLoad current )
+    {
+        // The mover leaves its partition, so the target has to stay below it even with one more thread
+        int boundThreads = target.boundThreads.get();
+        int currentBoundThreads = current.boundThreads.get();
+        if ( boundThreads + 1 < currentBoundThreads )
+        {
+            return true;
+        }
+        return boundThreads < currentBoundThreads && target.heat * 2 < current.heat;
+    }
+
+    private PartitionLoad load( Partition partition )
+    {
+        int partitionIndex = partition.getPartitionIndex();
+        PartitionLoad[] loads = this.loads;
+        if ( partitionIndex < loads.length && loads[partitionIndex] != null
+            && loads[partitionIndex].isLoadOf( partition ) )
+        {
+            return loads[partitionIndex];
+        }
+
+        synchronized ( this )
+        {
+            loads = this.loads;
+            if ( partitionIndex >= loads.length )
+            {
+                loads = Arrays.copyOf( loads, partitionIndex + 1 );
+            }
+            if ( loads[partitionIndex] == null || !loads[partitionIndex].isLoadOf( partition ) )
+            {
+                // First sight of the partition or the pool closed the old one at this index and put a new one there
+                loads[partitionIndex] = new PartitionLoad( partition );
+            }
+            this.loads = loads;
+            return loads[partitionIndex];
+        }
+    }
+
+    private static class Binding
+        extends WeakReference<Thread>
+    {
+
+        private Partition partition;
+
+        private PartitionLoad load;
+
+        private int acquisitions;
+
+        private Binding( Thread thread )
+        {
+            super( thread );
+        }
+
+        private boolean isAlive()
+        {
+            Thread thread = get();
+            return thread != null && thread.isAlive();
+        }
+    }
+
+    private static class PartitionLoad
+    {
+
+        // Weak since stale thread locals of a closed pool would otherwise keep all of its partitions reachable
+        private final WeakReference<Partition> partition;
+
+        private final AtomicInteger boundThreads = new AtomicInteger();
+
+        // Selections that found the partition drained by a concurrent claim
+        private final AtomicLong failures = new AtomicLong();
+
+        private final AtomicLong sampledContention = new AtomicLong();
+
+        // Decaying sum of contention events per sample, settles at four times the recent rate
+        private volatile long heat;
+
+        private PartitionLoad( Partition partition )
+        {
+            this.partition = new WeakReference<Partition>( partition );
+        }
+
+        private boolean isLoadOf( Partition partition )
+        {
+            return this.partition.get() == partition;
+        }
+
+        private long sample( Partition partition )
+        {
+            long contention = partition.getContentionCount() + failures.get();
+            long previous = sampledContention.get();
+            if ( contention > previous && sampledContention.compareAndSet( previous, contention ) )
+            {
+                heat = heat - ( heat >> 2 ) + ( contention - previous );
+            }
+            else if ( contention == previous )
+            {
+                heat = heat - ( ( heat + 3 ) >> 2 );
+            }
+            return heat;
+        }
+    }
+
+}
@@ -0,0 +1,167 @@
+package com.github.directringcache.selector;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.github.directringcache.selector.ProcessorLocalPartitionSliceSelector.CpuAdapter;
+import com.github.directringcache.spi.Partition;
+import com.github.directringcache.spi.PartitionSlice;
+import com.github.directringcache.spi.PartitionSliceSelector;
+
+public class CarrierLocalPartitionSliceSelector
+    implements PartitionSliceSelector
+{
+
+    private final CpuAdapter cpuAdapter = findCpuAdapter();
+
+    private final int laneMask;
+
+    // Partitions are assigned per processor lane instead of per thread, short lived threads leave nothing behind
+    private final AtomicReferenceArray<Partition> lanePartitions;
+
+    private final WorkStealer workStealer = new WorkStealer();
+
+    public CarrierLocalPartitionSliceSelector()
+    {
+        int processors =
+            cpuAdapter != null ? cpuAdapter.getProcessorCount() : Runtime.getRuntime().availableProcessors();
+        int lanes = Integer.highestOneBit( Math.max( 1, processors ) - 1 ) << 1;
+        this.laneMask = Math.max( 1, lanes ) - 1;
+        this.lanePartitions = new AtomicReferenceArray<Partition>( laneMask + 1 );
+    }
+
+    @Override
+    public PartitionSlice selectPartitionSlice( Partition[] partitions )
+    {
+        int lane = lane();
+        Partition partition = lanePartitions.get( lane );
+        if ( partition != null && partition.available() > 0 )
+        {
+            PartitionSlice slice = partition.get();
+            if ( slice != null )
+            {
+                return slice;
+            }
+        }
+
+        Partition target = selectLanePartition( partitions, lane );
+        if ( target != null )
+        {
+            lanePartitions.compareAndSet( lane, partition, target );
+            PartitionSlice slice = target.get();
+            if ( slice != null )
+            {
+                return slice;
+            }
+        }
+
+        PartitionSlice slice = workStealer.steal( partitions, target );
+        if ( slice != null )
+        {
+            return slice;
+        }
+
+        throw new RuntimeException( "Could not retrieve a new partition slice" );
+    }
+
+    @Override
+    public void selectPartitionSlices( Partition[] partitions, int count, PartitionSlice[] slices, int offset )
+    {
+        int selected = 0;
+        try
+        {
+            while ( selected < count )
+            {
+                Partition partition = lanePartitions.get( lane() );
+                if ( partition != null && partition.available() > 0 )
+                {
+                    selected += partition.get( count - selected, slices, offset + selected );
+                }
+                if ( selected < count )
+                {
+                    // Moves the lane on to another partition if its own ran dry
+                    slices[offset + selected++] = selectPartitionSlice( partitions );
+                }
+            }
+        }
+        catch ( RuntimeException e )
+        {
+            SelectorUtils.releasePartitionSlices( slices, offset, selected );
+            throw e;
+        }
+    }
+
+    @Override
+    public void freePartitionSlice( Partition partition, int partitionIndex, PartitionSlice slice )
+    {
+    }
+
+    public boolean isProcessorKeyed()
+    {
+        return cpuAdapter != null;
+    }
+
+    public long getStealCount()
+    {
+        return workStealer.getStealCount();
+    }
+
+    public long getCollisionCount()
+    {
+        return workStealer.getCollisionCount();
+    }
+
+    private int lane()
+    {
+        if ( cpuAdapter != null )
+        {
+            // The processor a thread currently runs on, which follows the carrier and not the logical thread
+            int processorId = cpuAdapter.getCurrentProcessorId();
+            if ( processorId >= 0 )
+            {
+                return processorId & laneMask;
+            }
+        }
+
+        // Without native support threads are spread over a fixed number of lanes by their id
+        int hash = (int) Thread.currentThread().getId() * 0x9E3779B9;
+        return ( hash ^ ( hash >>> 16 ) ) & laneMask;
+    }
+
+    private Partition selectLanePartition( Partition[] partitions, int lane )
+    {
+        // Lanes start out spread evenly, a full partition is replaced by the one with the most free slices
+        Partition partition = partitions[lane % partitions.length];
+        if ( partition.available() > 0 )
+        {
+            return partition;
+        }
+
+        Partition target = null;
+        for ( Partition candidate : partitions )
+        {
+            if ( candidate.available() > ( target == null ? 0 : target.available() ) )
+            {
+                target = candidate;
+            }
+        }
+        return target;
+    }
+
+    private static CpuAdapter findCpuAdapter()
+    {
+        try
+        {
+            return ProcessorLocalPartitionSliceSelector.getCpuAdapterSPI();
+        }
+        catch ( UnsupportedOperationSystemException e )
+        {
+            return null;
+        }
+        catch ( LinkageError e )
+        {
+            // JNA or the native library is not available
+            return null;
+        }
+    }
+
+}
@@ -20,36 +20,34 @@ public class ProcessorLocalPartitionSliceSelector
     private final AtomicReferenceArray<Partition> cpuLocalPartition =
         new AtomicReferenceArray<Partition>( cpuAdapter.getProcessorCount() );
 
+    private final WorkStealer workStealer = new WorkStealer();
+
     private volatile int[] assigned = new int[0];
 
     @Override
     public PartitionSlice selectPartitionSlice( Partition[] partitions )
     {
         int processorId = cpuAdapter.getCurrentProcessorId();
-        Partition partition = cpuLocalPartition.get( processorId );
-        if ( partition != null && partition.available() > 0 )
+        Partition owner = cpuLocalPartition.get( processorId );
+        if ( owner != null && owner.available() > 0 )
         {
-            PartitionSlice slice = partition.get();
+            PartitionSlice slice = owner.get();
             if ( slice != null )
             {
                 return slice;
             }
         }
 
-        synchronized ( assigned )
+        synchronized ( this )
         {
-            if ( assigned.length == 0 )
-            {
-                assigned = new int[partitions.length];
-                Arrays.fill( assigned, -1 );
-            }
-
-            for ( int index = 0; index < assigned.length; index++ )
+            // Pools may add or retire partitions, so assignments are tracked by partition index
+            int[] assigned = ensureAssigned( partitions );
+            for ( int index = 0; index < partitions.length; index++ )
             {
-                if ( assigned[index] == -1 )
+                Partition partition = partitions[index];
+                if ( assigned[partition.getPartitionIndex()] == -1 )
                 {
-                    assigned[index] = processorId;
-                    partition = partitions[index];
+                    assigned[partition.getPartitionIndex()] = processorId;
                     if ( partition.available() > 0 )
                     {
                         cpuLocalPartition.set( processorId, partition );
@@ -61,33 +59,82 @@ public class ProcessorLocalPartitionSliceSelector
                     }
                 }
             }
+        }
 
-            for ( int index = 0; index < partitions.length; index++ )
+        // Every partition has an owner, borrow from a neighbour outside of the lock
+        PartitionSlice slice = workStealer.steal( partitions, owner );
+        if ( slice != null )
+        {
+            return slice;
+        }
+
+        throw new RuntimeException( "Could not retrieve a new partition slice" );
+    }
+
+    @Override
+    public void selectPartitionSlices( Partition[] partitions, int count, PartitionSlice[] slices, int offset )
+    {
+        int selected = 0;
+        try
+        {
+            while ( selected < count )
             {
-                if ( partitions[index].available() > 0 )
+                Partition partition = cpuLocalPartition.get( cpuAdapter.getCurrentProcessorId() );
+                if ( partition != null && partition.available() > 0 )
                 {
-                    PartitionSlice slice = partitions[index].get();
-                    if ( slice != null )
-                    {
-                        return slice;
-                    }
+                    selected += partition.get( count - selected, slices, offset + selected );
+                }
+                if ( selected < count )
+                {
+                    // Reassigns the local partition if possible
+                    slices[offset + selected++] = selectPartitionSlice( partitions );
                 }
             }
         }
-
-        throw new RuntimeException( "Could not retrieve a new partition slice" );
+        catch ( RuntimeException e )
+        {
+            SelectorUtils.releasePartitionSlices( slices, offset, selected );
+            throw e;
+        }
     }
 
     @Override
     public void freePartitionSlice( Partition partition, int partitionIndex, PartitionSlice slice )
     {
-        if ( partition.available() == partition.getSliceCount() )
+        int[] assigned = this.assigned;
+        if ( partition.available() == partition.getSliceCount() && partitionIndex < assigned.length )
         {
             assigned[partitionIndex] = -1;
         }
     }
 
-    private CpuAdapter getCpuAdapterSPI()
+    public long getStealCount()
+    {
+        return workStealer.getStealCount();
+    }
+
+    public long getCollisionCount()
+    {
+        return workStealer.getCollisionCount();
+    }
+
+    private int[] ensureAssigned( Partition[] partitions )
+    {
+        int length = 0;
+        for ( Partition partition : partitions )
+        {
+            length = Math.max( length, partition.getPartitionIndex() + 1 );
+        }
+        if ( assigned.length < length )
+        {
+            int[] newAssigned = Arrays.copyOf( assigned, length );
+            Arrays.fill( newAssigned, assigned.length, length, -1 );
+            assigned = newAssigned;
+        }
+        return assigned;
+    }
+
+    static CpuAdapter getCpuAdapterSPI()
     {
         String osName = System.getProperty( "os.name" );
         String osArch = System.getProperty( "os.arch" );
@@ -109,7 +156,7 @@ public class ProcessorLocalPartitionSliceSelector
             + ") is unsupported for use of cpu local allocation strategy" );
     }
 
-    private static interface CpuAdapter
+    static interface CpuAdapter
     {
 
         int getProcessorCount();
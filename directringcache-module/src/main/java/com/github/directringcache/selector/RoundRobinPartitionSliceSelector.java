@@ -24,6 +24,11 @@ public class RoundRobinPartitionSliceSelector
             int retry = 0;
             while ( retry < partitions.length )
             {
+                if ( index >= partitions.length )
+                {
+                    // The pool retired partitions since the last selection
+                    index = 0;
+                }
                 Partition partition = partitions[index++];
                 if ( index == partitions.length )
                 {
@@ -44,6 +49,45 @@ public class RoundRobinPartitionSliceSelector
         throw new RuntimeException( "Could not retrieve a new partition slice" );
     }
 
+    @Override
+    public void selectPartitionSlices( Partition[] partitions, int count, PartitionSlice[] slices, int offset )
+    {
+        int selected = 0;
+        lock.lock();
+        try
+        {
+            int retry = 0;
+            while ( selected < count && retry < partitions.length )
+            {
+                if ( index >= partitions.length )
+                {
+                    // The pool retired partitions since the last selection
+                    index = 0;
+                }
+                Partition partition = partitions[index++];
+                if ( index == partitions.length )
+                {
+                    index = 0;
+                }
+                if ( partition.available() > 0 )
+                {
+                    selected += partition.get( count - selected, slices, offset + selected );
+                }
+                retry++;
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        if ( selected < count )
+        {
+            SelectorUtils.releasePartitionSlices( slices, offset, selected );
+            throw new RuntimeException( "Could not retrieve " + count + " new partition slices" );
+        }
+    }
+
     @Override
     public void freePartitionSlice( Partition partition, int partitionIndex, PartitionSlice slice )
     {
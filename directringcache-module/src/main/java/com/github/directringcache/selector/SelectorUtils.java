@@ -0,0 +1,21 @@
+package com.github.directringcache.selector;
+
+import com.github.directringcache.spi.PartitionSlice;
+
+final class SelectorUtils
+{
+
+    private SelectorUtils()
+    {
+    }
+
+    static void releasePartitionSlices( PartitionSlice[] slices, int offset, int count )
+    {
+        for ( int i = offset; i < offset + count; i++ )
+        {
+            slices[i].getPartition().free( slices[i] );
+            slices[i] = null;
+        }
+    }
+
+}
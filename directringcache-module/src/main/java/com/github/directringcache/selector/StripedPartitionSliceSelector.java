@@ -0,0 +1,140 @@
+package com.github.directringcache.selector;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.directringcache.spi.Partition;
+import com.github.directringcache.spi.PartitionSlice;
+import com.github.directringcache.spi.PartitionSliceSelector;
+
+public class StripedPartitionSliceSelector
+    implements PartitionSliceSelector
+{
+
+    private static final ThreadLocal<Probe> PROBES = new ThreadLocal<Probe>()
+    {
+
+        @Override
+        protected Probe initialValue()
+        {
+            return new Probe( Thread.currentThread().getId() );
+        }
+    };
+
+    // Only touched after a lost race or a full partition, never on the fast path
+    private final AtomicLong rehashCount = new AtomicLong();
+
+    @Override
+    public PartitionSlice selectPartitionSlice( Partition[] partitions )
+    {
+        Probe probe = PROBES.get();
+
+        // Like LongAdder cells, a thread sticks to the partition its probe hashes to until it collides there
+        for ( int attempt = 0; attempt < partitions.length; attempt++ )
+        {
+            Partition partition = partitions[probe.index( partitions.length )];
+            if ( partition.available() > 0 )
+            {
+                PartitionSlice slice = partition.get();
+                if ( slice != null )
+                {
+                    return slice;
+                }
+            }
+            probe.advance();
+            rehashCount.incrementAndGet();
+        }
+
+        // Random probing may miss the last free slices, so finish with one sweep over all partitions
+        int start = probe.index( partitions.length );
+        for ( int i = 0; i < partitions.length; i++ )
+        {
+            Partition partition = partitions[( start + i ) % partitions.length];
+            if ( partition.available() > 0 )
+            {
+                PartitionSlice slice = partition.get();
+                if ( slice != null )
+                {
+                    return slice;
+                }
+            }
+        }
+
+        throw new RuntimeException( "Could not retrieve a new partition slice" );
+    }
+
+    @Override
+    public void selectPartitionSlices( Partition[] partitions, int count, PartitionSlice[] slices, int offset )
+    {
+        Probe probe = PROBES.get();
+
+        int selected = 0;
+        for ( int attempt = 0; selected < count && attempt < partitions.length; attempt++ )
+        {
+            Partition partition = partitions[probe.index( partitions.length )];
+            if ( partition.available() > 0 )
+            {
+                selected += partition.get( count - selected, slices, offset + selected );
+            }
+            if ( selected < count )
+            {
+                probe.advance();
+                rehashCount.incrementAndGet();
+            }
+        }
+
+        int start = probe.index( partitions.length );
+        for ( int i = 0; selected < count && i < partitions.length; i++ )
+        {
+            Partition partition = partitions[( start + i ) % partitions.length];
+            if ( partition.available() > 0 )
+            {
+                selected += partition.get( count - selected, slices, offset + selected );
+            }
+        }
+
+        if ( selected < count )
+        {
+            SelectorUtils.releasePartitionSlices( slices, offset, selected );
+            throw new RuntimeException( "Could not retrieve " + count + " new partition slices" );
+        }
+    }
+
+    @Override
+    public void freePartitionSlice( Partition partition, int partitionIndex, PartitionSlice slice )
+    {
+    }
+
+    public long getRehashCount()
+    {
+        return rehashCount.get();
+    }
+
+    private static class Probe
+    {
+
+        private int value;
+
+        private Probe( long threadId )
+        {
+            // Golden ratio spread of the thread id, a zero probe would never change under xorshift
+            int value = (int) threadId * 0x9E3779B9;
+            this.value = value == 0 ? 1 : value;
+        }
+
+        private int index( int partitions )
+        {
+            return ( value >>> 1 ) % partitions;
+        }
+
+        private void advance()
+        {
+            // Marsaglia xorshift, the same rehash LongAdder applies to its cell probe
+            int value = this.value;
+            value ^= value << 13;
+            value ^= value >>> 17;
+            value ^= value << 5;
+            this.value = value;
+        }
+    }
+
+}
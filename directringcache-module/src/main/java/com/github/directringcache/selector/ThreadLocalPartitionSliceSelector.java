@@ -1,5 +1,8 @@
 package com.github.directringcache.selector;
 
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
 import com.github.directringcache.spi.Partition;
 import com.github.directringcache.spi.PartitionSlice;
 import com.github.directringcache.spi.PartitionSliceSelector;
@@ -12,86 +15,180 @@ public class ThreadLocalPartitionSliceSelector
 
     private final AccessStatistics accessStatistics = new AccessStatistics();
 
-    private volatile boolean[] assigned;
+    private final WorkStealer workStealer = new WorkStealer();
+
+    // Owner thread of every partition, weakly referenced so partitions of terminated threads can be handed out again
+    private volatile Owner[] owners;
+
+    private volatile long reclaimCount = 0;
 
     @Override
     public PartitionSlice selectPartitionSlice( Partition[] partitions )
     {
         accessStatistics.access++;
 
-        Partition partition = partitionAssignment.get();
-        if ( partition != null && partition.available() > 0 )
+        Partition local = partitionAssignment.get();
+        if ( local != null && local.available() > 0 )
         {
-            return partition.get();
+            PartitionSlice slice = local.get();
+            if ( slice != null )
+            {
+                return slice;
+            }
         }
 
         synchronized ( this )
         {
-            if ( assigned == null )
-            {
-                assigned = new boolean[partitions.length];
-            }
-
-            for ( int index = 0; index < assigned.length; index++ )
+            // Pools may add or retire partitions, so owners are tracked by partition index
+            Owner[] owners = ensureOwners( partitions );
+            Thread thread = Thread.currentThread();
+            for ( int index = 0; index < partitions.length; index++ )
             {
-                if ( !assigned[index] )
+                Partition partition = partitions[index];
+                Owner previousOwner = owners[partition.getPartitionIndex()];
+                if ( ( previousOwner == null || !previousOwner.isAlive() ) && partition.available() > 0 )
                 {
-                    assigned[index] = true;
-                    partition = partitions[index];
-                    if ( partition.available() > 0 )
+                    if ( previousOwner != null )
                     {
-                        partitionAssignment.set( partition );
-                        PartitionSlice slice = partition.get();
-                        if ( slice != null )
-                        {
-                            accessStatistics.reallocatePartition++;
-                            return slice;
-                        }
+                        reclaimCount++;
                     }
-                }
-            }
-
-            for ( int index = 0; index < partitions.length; index++ )
-            {
-                if ( partitions[index].available() > 0 )
-                {
-                    PartitionSlice slice = partitions[index].get();
+                    owners[partition.getPartitionIndex()] = new Owner( thread );
+                    release( owners, local, thread );
+                    partitionAssignment.set( partition );
+                    PartitionSlice slice = partition.get();
                     if ( slice != null )
                     {
-                        accessStatistics.collisions++;
+                        accessStatistics.reallocatePartition++;
                         return slice;
                     }
                 }
             }
         }
 
+        // Every partition has an owner, borrow from a neighbour outside of the lock
+        PartitionSlice slice = workStealer.steal( partitions, local );
+        if ( slice != null )
+        {
+            return slice;
+        }
+
         throw new RuntimeException( "Could not retrieve a new partition slice" );
     }
 
+    @Override
+    public void selectPartitionSlices( Partition[] partitions, int count, PartitionSlice[] slices, int offset )
+    {
+        int selected = 0;
+        try
+        {
+            while ( selected < count )
+            {
+                Partition partition = partitionAssignment.get();
+                if ( partition != null && partition.available() > 0 )
+                {
+                    selected += partition.get( count - selected, slices, offset + selected );
+                }
+                if ( selected < count )
+                {
+                    // Reassigns the local partition if possible
+                    slices[offset + selected++] = selectPartitionSlice( partitions );
+                }
+            }
+        }
+        catch ( RuntimeException e )
+        {
+            SelectorUtils.releasePartitionSlices( slices, offset, selected );
+            throw e;
+        }
+    }
+
     @Override
     public void freePartitionSlice( Partition partition, int partitionIndex, PartitionSlice slice )
     {
-        if ( partition.available() == 0 )
+        // Ownership ends when the owner moves on or terminates, see release and Owner
+    }
+
+    public long getStealCount()
+    {
+        return workStealer.getStealCount();
+    }
+
+    public long getCollisionCount()
+    {
+        return workStealer.getCollisionCount();
+    }
+
+    @Override
+    public String toString()
+    {
+        return accessStatistics.toString();
+    }
+
+    public long getReclaimCount()
+    {
+        return reclaimCount;
+    }
+
+    private Owner[] ensureOwners( Partition[] partitions )
+    {
+        int length = 0;
+        for ( Partition partition : partitions )
+        {
+            length = Math.max( length, partition.getPartitionIndex() + 1 );
+        }
+        if ( owners == null )
+        {
+            owners = new Owner[length];
+        }
+        else if ( owners.length < length )
         {
-            assigned[partitionIndex] = false;
-            System.out.println( accessStatistics.toString() );
+            owners = Arrays.copyOf( owners, length );
         }
+        return owners;
     }
 
-    private static class AccessStatistics
+    private void release( Owner[] owners, Partition partition, Thread thread )
     {
+        // A thread moving on gives up its previous partition instead of keeping it forever
+        if ( partition != null && partition.getPartitionIndex() < owners.length )
+        {
+            Owner owner = owners[partition.getPartitionIndex()];
+            if ( owner != null && owner.get() == thread )
+            {
+                owners[partition.getPartitionIndex()] = null;
+            }
+        }
+    }
 
-        private volatile long access = 0;
+    private static class Owner
+        extends WeakReference<Thread>
+    {
 
-        private volatile long collisions = 0;
+        private Owner( Thread thread )
+        {
+            super( thread );
+        }
+
+        private boolean isAlive()
+        {
+            Thread thread = get();
+            return thread != null && thread.isAlive();
+        }
+    }
+
+    private class AccessStatistics
+    {
+
+        private volatile long access = 0;
 
         private volatile long reallocatePartition = 0;
 
         @Override
         public String toString()
         {
-            return "TLA-AccessStatistics [access=" + access + ", collisions=" + collisions + ", reallocatePartition="
-                + reallocatePartition + "]";
+            return "TLA-AccessStatistics [access=" + access + ", collisions=" + workStealer.getCollisionCount()
+                + ", steals=" + workStealer.getStealCount() + ", reallocatePartition=" + reallocatePartition
+                + ", reclaims=" + reclaimCount + "]";
         }
     }
 
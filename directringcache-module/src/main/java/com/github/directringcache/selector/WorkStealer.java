@@ -0,0 +1,104 @@
+package com.github.directringcache.selector;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.directringcache.spi.Partition;
+import com.github.directringcache.spi.PartitionSlice;
+
+final class WorkStealer
+{
+
+    // Sampling a few victims is enough to avoid the fullest ones without reading every occupancy counter
+    private static final int STEAL_CANDIDATES = 4;
+
+    private static final ThreadLocal<Random> RANDOMS = new ThreadLocal<Random>()
+    {
+
+        @Override
+        protected Random initialValue()
+        {
+            return new Random( System.nanoTime() ^ Thread.currentThread().getId() );
+        }
+    };
+
+    private final AtomicLong stealCount = new AtomicLong();
+
+    private final AtomicLong collisionCount = new AtomicLong();
+
+    PartitionSlice steal( Partition[] partitions, Partition owner )
+    {
+        Partition victim = selectVictim( partitions, owner );
+        if ( victim != null )
+        {
+            PartitionSlice slice = victim.get();
+            if ( slice != null )
+            {
+                stealCount.incrementAndGet();
+                return slice;
+            }
+            collisionCount.incrementAndGet();
+        }
+
+        // The sampled victims ran dry under us, sweep the rest starting at a random partition
+        int start = RANDOMS.get().nextInt( partitions.length );
+        for ( int i = 0; i < partitions.length; i++ )
+        {
+            Partition partition = partitions[( start + i ) % partitions.length];
+            if ( partition.available() > 0 )
+            {
+                PartitionSlice slice = partition.get();
+                if ( slice != null )
+                {
+                    stealCount.incrementAndGet();
+                    return slice;
+                }
+                collisionCount.incrementAndGet();
+            }
+        }
+        return null;
+    }
+
+    long getStealCount()
+    {
+        return stealCount.get();
+    }
+
+    long getCollisionCount()
+    {
+        return collisionCount.get();
+    }
+
+    private Partition selectVictim( Partition[] partitions, Partition owner )
+    {
+        int length = partitions.length;
+        int home = -1;
+        for ( int i = 0; owner != null && i < length; i++ )
+        {
+            if ( partitions[i] == owner )
+            {
+                home = i;
+                break;
+            }
+        }
+
+        // Random partitions other than the owner's, so overflowing threads spread instead of piling onto one partition
+        Random random = RANDOMS.get();
+        Partition victim = null;
+        int victimAvailable = 0;
+        for ( int i = 0; i < Math.min( STEAL_CANDIDATES, length ); i++ )
+        {
+            int index = home == -1 || length == 1 ? random.nextInt( length )
+                            : ( home + 1 + random.nextInt( length - 1 ) ) % length;
+            Partition candidate = partitions[index];
+            int available = candidate.available();
+            if ( available > victimAvailable )
+            {
+                victim = candidate;
+                victimAvailable = available;
+            }
+        }
+        return victim;
+    }
+
+}
@@ -13,8 +13,12 @@ public interface Partition
 
     int getPartitionIndex();
 
+    long getContentionCount();
+
     PartitionSlice get();
 
+    int get( int count, PartitionSlice[] slices, int offset );
+
     void free( PartitionSlice slice );
 
     void close();
@@ -1,5 +1,7 @@
 package com.github.directringcache.spi;
 
+import java.nio.ByteBuffer;
+
 public interface PartitionSlice
 {
 
@@ -11,12 +13,48 @@ public interface PartitionSlice
 
     void put( byte[] array, int offset, int length );
 
+    void put( int position, byte[] array, int offset, int length );
+
+    void put( int position, PartitionSlice source, int sourcePosition, int length );
+
+    void put( int position, ByteBuffer source );
+
+    void putShort( short value );
+
+    void putShort( int position, short value );
+
+    void putInt( int value );
+
+    void putInt( int position, int value );
+
+    void putLong( long value );
+
+    void putLong( int position, long value );
+
     byte read();
 
     byte read( int position );
 
     void read( byte[] array, int offset, int length );
 
+    void read( int position, byte[] array, int offset, int length );
+
+    void read( int position, ByteBuffer target );
+
+    ByteBuffer byteBuffer( int position, int length );
+
+    short getShort();
+
+    short getShort( int position );
+
+    int getInt();
+
+    int getInt( int position );
+
+    long getLong();
+
+    long getLong( int position );
+
     int getSliceByteSize();
 
     int readableBytes();
@@ -5,6 +5,8 @@ public interface PartitionSliceSelector
 
     PartitionSlice selectPartitionSlice( Partition[] partitions );
 
+    void selectPartitionSlices( Partition[] partitions, int count, PartitionSlice[] slices, int offset );
+
     void freePartitionSlice( Partition partition, int partitionIndex, PartitionSlice slice );
 
 }
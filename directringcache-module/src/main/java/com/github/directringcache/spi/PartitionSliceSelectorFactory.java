@@ -0,0 +1,8 @@
+package com.github.directringcache.spi;
+
+public interface PartitionSliceSelectorFactory
+{
+
+    PartitionSliceSelector newPartitionSliceSelector();
+
+}
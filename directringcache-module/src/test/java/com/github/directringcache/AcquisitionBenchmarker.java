@@ -0,0 +1,113 @@
+package com.github.directringcache;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.junit.Test;
+
+import com.carrotsearch.junitbenchmarks.AbstractBenchmark;
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.Clock;
+import com.carrotsearch.junitbenchmarks.annotation.BenchmarkHistoryChart;
+import com.carrotsearch.junitbenchmarks.annotation.LabelType;
+import com.github.directringcache.selector.RoundRobinPartitionSliceSelector;
+
+public class AcquisitionBenchmarker
+    extends AbstractBenchmark
+{
+
+    private static final int THREADS = 16;
+
+    private static final int ACQUISITIONS_PER_THREAD = 200;
+
+    private final PartitionBufferPool pool;
+
+    public AcquisitionBenchmarker()
+    {
+        // Far fewer slices than threads, so most acquisitions have to wait for a free
+        PartitionBufferBuilder builder =
+            new PartitionBufferBuilder( PartitionStrategy.POOLED_UNSAFE, new RoundRobinPartitionSliceSelector() );
+        this.pool = builder.allocatePool( "4K", 1, "1K" );
+    }
+
+    @Test
+    @BenchmarkHistoryChart( labelWith = LabelType.RUN_ID, maxRuns = 20 )
+    @BenchmarkOptions( warmupRounds = 2, benchmarkRounds = 10, clock = Clock.NANO_TIME )
+    public void benchmarkBlockingAcquisition()
+        throws Exception
+    {
+        final AtomicLongArray acquisitions = new AtomicLongArray( THREADS );
+        final AtomicLong waitNanos = new AtomicLong();
+        final AtomicLong maxWaitNanos = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch( THREADS );
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 2 );
+
+        for ( int t = 0; t < THREADS; t++ )
+        {
+            final int thread = t;
+            new Thread()
+            {
+
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        // Threads keep going until a time limit so the per thread counts show the fairness
+                        while ( acquisitions.get( thread ) < ACQUISITIONS_PER_THREAD && System.nanoTime() < deadline )
+                        {
+                            long start = System.nanoTime();
+                            PartitionBuffer partitionBuffer = pool.getPartitionBuffer( 1, TimeUnit.SECONDS );
+                            long waited = System.nanoTime() - start;
+                            if ( partitionBuffer == null )
+                            {
+                                continue;
+                            }
+                            waitNanos.addAndGet( waited );
+                            long max = maxWaitNanos.get();
+                            while ( waited > max && !maxWaitNanos.compareAndSet( max, waited ) )
+                            {
+                                max = maxWaitNanos.get();
+                            }
+
+                            partitionBuffer.writeLong( thread );
+                            partitionBuffer.free();
+                            acquisitions.incrementAndGet( thread );
+                        }
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        done.await();
+
+        long total = 0;
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for ( int t = 0; t < THREADS; t++ )
+        {
+            total += acquisitions.get( t );
+            min = Math.min( min, acquisitions.get( t ) );
+            max = Math.max( max, acquisitions.get( t ) );
+        }
+        System.out.println( "Acquisitions: total=" + total + ", perThreadMin=" + min + ", perThreadMax=" + max
+            + ", avgWaitMicros=" + ( total == 0 ? 0 : waitNanos.get() / total / 1000 ) + ", maxWaitMicros="
+            + maxWaitNanos.get() / 1000 );
+    }
+
+    @Override
+    protected void finalize()
+    {
+        pool.close();
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.github.directringcache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.github.directringcache.impl.BuddyPooledPartition;
+import com.github.directringcache.selector.RoundRobinPartitionSliceSelector;
+import com.github.directringcache.spi.Partition;
+import com.github.directringcache.spi.PartitionSlice;
+
+public class BuddyPartitionTestCase
+{
+
+    @Test
+    public void testRunsMergeBackAfterShuffledFree()
+        throws Exception
+    {
+        // 12 slices are seeded as one run of 8 and one run of 4
+        Partition partition =
+            BuddyPooledPartition.UNSAFE_BUDDY_PARTITION_FACTORY.newPartition( 0, 1024, 12,
+                                                                              new RoundRobinPartitionSliceSelector() );
+        try
+        {
+            Random random = new Random( 42 );
+            for ( int round = 0; round < 20; round++ )
+            {
+                PartitionSlice[] slices = new PartitionSlice[12];
+                assertEquals( 5, partition.get( 5, slices, 0 ) );
+                assertEquals( 7, partition.get( 7, slices, 5 ) );
+                assertEquals( 0, partition.available() );
+                assertNull( partition.get() );
+                assertEquals( 0, partition.get( 1, new PartitionSlice[1], 0 ) );
+
+                for ( int i = 0; i < slices.length; i++ )
+                {
+                    slices[i].putInt( 0, round * 100 + i );
+                }
+                for ( int i = 0; i < slices.length; i++ )
+                {
+                    assertEquals( round * 100 + i, slices[i].getInt( 0 ) );
+                }
+
+                List<PartitionSlice> shuffled = new ArrayList<PartitionSlice>( Arrays.asList( slices ) );
+                Collections.shuffle( shuffled, random );
+                for ( PartitionSlice slice : shuffled )
+                {
+                    partition.free( slice );
+                }
+                assertEquals( 12, partition.available() );
+                assertEquals( 0, partition.used() );
+            }
+        }
+        finally
+        {
+            partition.close();
+        }
+    }
+
+    @Test
+    public void testPoolWithFragmentedPartitions()
+        throws Exception
+    {
+        PartitionBufferBuilder builder =
+            new PartitionBufferBuilder( PartitionStrategy.POOLED_UNSAFE_BUDDY, new RoundRobinPartitionSliceSelector() );
+        PartitionBufferPool pool = builder.allocatePool( "64K", 1, "1K" );
+
+        try
+        {
+            List<PartitionBuffer> partitionBuffers = new ArrayList<PartitionBuffer>();
+            for ( int i = 0; i < 64; i++ )
+            {
+                PartitionBuffer partitionBuffer = pool.getPartitionBuffer();
+                partitionBuffer.writeInt( i );
+                partitionBuffers.add( partitionBuffer );
+            }
+            for ( int i = 0; i < 64; i += 2 )
+            {
+                partitionBuffers.get( i ).free();
+            }
+
+            // Only single slices are left, large writes fall back to runs of one
+            PartitionBuffer large = pool.getPartitionBuffer();
+            byte[] data = new byte[32 * 1024];
+            new Random( 7 ).nextBytes( data );
+            large.writeBytes( data );
+            assertEquals( 0, pool.getFreeSliceCount() );
+
+            byte[] read = new byte[data.length];
+            large.readBytes( read );
+            assertEquals( Arrays.toString( data ), Arrays.toString( read ) );
+
+            large.free();
+            for ( int i = 1; i < 64; i += 2 )
+            {
+                assertEquals( i, partitionBuffers.get( i ).readInt() );
+                partitionBuffers.get( i ).free();
+            }
+            assertEquals( 64, pool.getFreeSliceCount() );
+
+            // All slices merged back, so one large buffer is served from a single contiguous run again
+            large = pool.getPartitionBuffer();
+            large.writeBytes( new byte[64 * 1024] );
+            assertEquals( 64, large.slices() );
+            large.free();
+        }
+        finally
+        {
+            pool.close();
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.github.directringcache;
+
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.carrotsearch.junitbenchmarks.AbstractBenchmark;
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.Clock;
+import com.carrotsearch.junitbenchmarks.annotation.BenchmarkHistoryChart;
+import com.carrotsearch.junitbenchmarks.annotation.LabelType;
+import com.github.directringcache.impl.ByteBufferPooledPartition;
+import com.github.directringcache.impl.UnsafePooledPartition;
+import com.github.directringcache.selector.RoundRobinPartitionSliceSelector;
+import com.github.directringcache.spi.Partition;
+import com.github.directringcache.spi.PartitionFactory;
+import com.github.directringcache.spi.PartitionSlice;
+
+@RunWith( Parameterized.class )
+public class ContentionBenchmarker
+    extends AbstractBenchmark
+{
+
+    private static final int SLICES_PER_ROUND = 1000;
+
+    @Parameters( name = "Execution {index} - {0}" )
+    public static Collection<Object[]> parameters()
+    {
+        List<Object[]> parameters = new LinkedList<Object[]>();
+        parameters.add( new Object[] { "UnsafePooledPartition", UnsafePooledPartition.UNSAFE_PARTITION_FACTORY } );
+        parameters.add( new Object[] { "ByteBufferPooledPartition{Direct}",
+            ByteBufferPooledPartition.DIRECT_BYTEBUFFER_PARTITION_FACTORY } );
+        return parameters;
+    }
+
+    // A single partition, so every thread competes for the same occupancy bitset
+    private final Partition partition;
+
+    public ContentionBenchmarker( String name, PartitionFactory partitionFactory )
+    {
+        this.partition = partitionFactory.newPartition( 0, 1024, 16384, new RoundRobinPartitionSliceSelector() );
+    }
+
+    @Test
+    @BenchmarkHistoryChart( labelWith = LabelType.RUN_ID, maxRuns = 20 )
+    @BenchmarkOptions( warmupRounds = 100, benchmarkRounds = 3200, clock = Clock.NANO_TIME, concurrency = 1 )
+    public void benchmark1Thread()
+        throws Exception
+    {
+        acquireAndFree();
+    }
+
+    @Test
+    @BenchmarkHistoryChart( labelWith = LabelType.RUN_ID, maxRuns = 20 )
+    @BenchmarkOptions( warmupRounds = 100, benchmarkRounds = 3200, clock = Clock.NANO_TIME, concurrency = 4 )
+    public void benchmark4Threads()
+        throws Exception
+    {
+        acquireAndFree();
+    }
+
+    @Test
+    @BenchmarkHistoryChart( labelWith = LabelType.RUN_ID, maxRuns = 20 )
+    @BenchmarkOptions( warmupRounds = 100, benchmarkRounds = 3200, clock = Clock.NANO_TIME, concurrency = 16 )
+    public void benchmark16Threads()
+        throws Exception
+    {
+        acquireAndFree();
+    }
+
+    @Test
+    @BenchmarkHistoryChart( labelWith = LabelType.RUN_ID, maxRuns = 20 )
+    @BenchmarkOptions( warmupRounds = 100, benchmarkRounds = 3200, clock = Clock.NANO_TIME, concurrency = 32 )
+    public void benchmark32Threads()
+        throws Exception
+    {
+        acquireAndFree();
+    }
+
+    private void acquireAndFree()
+        throws Exception
+    {
+        PartitionSlice[] slices = new PartitionSlice[SLICES_PER_ROUND / 100];
+        for ( int round = 0; round < 100; round++ )
+        {
+            for ( int i = 0; i < slices.length; i++ )
+            {
+                slices[i] = partition.get();
+                if ( slices[i] == null )
+                {
+                    throw new Exception( "Partition spuriously ran out of slices" );
+                }
+            }
+            for ( int i = 0; i < slices.length; i++ )
+            {
+                partition.free( slices[i] );
+            }
+        }
+    }
+
+    @Override
+    protected void finalize()
+    {
+        partition.close();
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.github.directringcache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.github.directringcache.spi.PartitionSliceSelector;
+
+public class ElasticPoolTestCase
+{
+
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void testGrowAndShrink()
+        throws Exception
+    {
+        for ( Object partitionSliceSelectorClass : TestCaseConstants.PARTITION_SLICE_SELECTORS )
+        {
+            PartitionSliceSelector partitionSliceSelector =
+                ( (Class<PartitionSliceSelector>) partitionSliceSelectorClass ).newInstance();
+            PartitionBufferBuilder builder =
+                new PartitionBufferBuilder( PartitionStrategy.POOLED_UNSAFE, partitionSliceSelector );
+            builder.withElasticMemory( "16K", 50, TimeUnit.MILLISECONDS );
+            PartitionBufferPool pool = builder.allocatePool( "64K", 4, "1K" );
+
+            try
+            {
+                assertEquals( 1, pool.getPartitionCount() );
+                assertEquals( 16 * 1024, pool.getAllocatedMemory() );
+
+                PartitionBuffer partitionBuffer = pool.getPartitionBuffer();
+                for ( int i = 0; i < 40 * 128; i++ )
+                {
+                    partitionBuffer.writeLong( i );
+                }
+                assertEquals( 3, pool.getPartitionCount() );
+                for ( int i = 0; i < 40 * 128; i++ )
+                {
+                    assertEquals( i, partitionBuffer.readLong() );
+                }
+
+                try
+                {
+                    for ( int i = 0; i < 30 * 128; i++ )
+                    {
+                        partitionBuffer.writeLong( i );
+                    }
+                    fail( "Pool must not grow beyond its maximum memory" );
+                }
+                catch ( RuntimeException e )
+                {
+                    assertEquals( 4, pool.getPartitionCount() );
+                }
+                partitionBuffer.free();
+                assertEquals( 64, pool.getFreeSliceCount() );
+
+                // Idle partitions are released lazily on the next allocations and frees
+                long deadline = System.currentTimeMillis() + 5000;
+                while ( pool.getPartitionCount() > 1 && System.currentTimeMillis() < deadline )
+                {
+                    Thread.sleep( 20 );
+                    pool.getPartitionBuffer().free();
+                }
+                assertEquals( 1, pool.getPartitionCount() );
+                assertEquals( 16, pool.getFreeSliceCount() );
+
+                // And grown again on demand
+                partitionBuffer = pool.getPartitionBuffer();
+                partitionBuffer.writeBytes( new byte[20 * 1024] );
+                assertEquals( 2, pool.getPartitionCount() );
+                partitionBuffer.free();
+            }
+            finally
+            {
+                pool.close();
+            }
+        }
+    }
+
+}
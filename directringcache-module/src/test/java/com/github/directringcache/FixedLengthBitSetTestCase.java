@@ -1,6 +1,11 @@
 package com.github.directringcache;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import org.junit.Test;
 
@@ -61,4 +66,109 @@ public class FixedLengthBitSetTestCase
         assertEquals( 6, bitSet.nextNotSet( 0 ) );
     }
 
+    @Test
+    public void testTestAndSetAlreadySet()
+        throws Exception
+    {
+        FixedLengthBitSet bitSet = new FixedLengthBitSet( 70 );
+        assertTrue( bitSet.testAndSet( 65 ) );
+        assertFalse( bitSet.testAndSet( 65 ) );
+        assertEquals( 1, bitSet.cardinality() );
+    }
+
+    @Test
+    public void testConcurrentTestAndSetNextNotSet()
+        throws Exception
+    {
+        final int bits = 10000;
+        final FixedLengthBitSet bitSet = new FixedLengthBitSet( bits );
+        final AtomicIntegerArray claims = new AtomicIntegerArray( bits );
+        final CountDownLatch latch = new CountDownLatch( 8 );
+
+        for ( int i = 0; i < 8; i++ )
+        {
+            final int startBit = i * 1000;
+            new Thread( new Runnable()
+            {
+
+                public void run()
+                {
+                    int index;
+                    while ( ( index = bitSet.testAndSetNextNotSet( startBit ) ) != -1 )
+                    {
+                        claims.incrementAndGet( index );
+                    }
+                    latch.countDown();
+                }
+            } ).start();
+        }
+        latch.await();
+
+        for ( int i = 0; i < bits; i++ )
+        {
+            assertEquals( "Bit " + i + " claimed wrong number of times", 1, claims.get( i ) );
+        }
+        assertEquals( bits, bitSet.cardinality() );
+
+        bitSet.clear( 9999 );
+        assertEquals( 9999, bitSet.testAndSetNextNotSet( 0 ) );
+    }
+
+    @Test
+    public void testSummaryLevels()
+        throws Exception
+    {
+        FixedLengthBitSet bitSet = new FixedLengthBitSet( 300000 );
+        for ( int i = 0; i < 300000; i++ )
+        {
+            assertEquals( i, bitSet.testAndSetNextNotSet( 0 ) );
+        }
+        assertEquals( 300000, bitSet.cardinality() );
+        assertEquals( -1, bitSet.testAndSetNextNotSet( 0 ) );
+        assertEquals( -1, bitSet.nextNotSet( 12345 ) );
+
+        bitSet.clear( 299999 );
+        bitSet.clear( 70000 );
+        assertEquals( 299998, bitSet.cardinality() );
+        assertEquals( 70000, bitSet.nextNotSet( 0 ) );
+        assertEquals( 299999, bitSet.nextNotSet( 70001 ) );
+        assertEquals( 299998, bitSet.nextSet( 299998 ) );
+        assertEquals( -1, bitSet.nextSet( 299999 ) );
+
+        assertTrue( bitSet.testAndSet( 299999 ) );
+        assertEquals( 70000, bitSet.nextNotSet( 100000 ) );
+        bitSet.clear( 299999 );
+
+        FixedLengthBitSet other = new FixedLengthBitSet( 300000 );
+        other.testAndSet( 70000 );
+        bitSet.or( other );
+        assertEquals( 299999, bitSet.cardinality() );
+        assertEquals( 299999, bitSet.firstNotSet() );
+
+        bitSet.flip( 299999 );
+        assertTrue( bitSet.isEmpty() );
+        assertEquals( 0, bitSet.firstSet() );
+    }
+
+    @Test
+    public void testBatchTestAndSetNextNotSet()
+        throws Exception
+    {
+        FixedLengthBitSet bitSet = new FixedLengthBitSet( 200 );
+        bitSet.testAndSet( 1 );
+        bitSet.testAndSet( 63 );
+
+        int[] indexes = new int[100];
+        assertEquals( 100, bitSet.testAndSetNextNotSet( 0, 100, indexes ) );
+        assertEquals( 0, indexes[0] );
+        assertEquals( 2, indexes[1] );
+        assertEquals( 64, indexes[62] );
+        assertEquals( 101, indexes[99] );
+        assertEquals( 102, bitSet.cardinality() );
+
+        assertEquals( 98, bitSet.testAndSetNextNotSet( 0, 100, indexes ) );
+        assertTrue( bitSet.isEmpty() );
+        assertEquals( 0, bitSet.testAndSetNextNotSet( 0, 100, indexes ) );
+    }
+
 }
@@ -0,0 +1,53 @@
+package com.github.directringcache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+import com.github.directringcache.impl.MappedFilePooledPartition;
+import com.github.directringcache.selector.RoundRobinPartitionSliceSelector;
+
+public class MappedFilePartitionTestCase
+{
+
+    @Test
+    public void testDataIsWrittenToPartitionFile()
+        throws Exception
+    {
+        File directory = File.createTempFile( "directringcache", "" );
+        directory.delete();
+
+        PartitionBufferBuilder builder =
+            new PartitionBufferBuilder( MappedFilePooledPartition.mappedFilePartitionFactory( directory ),
+                                        new RoundRobinPartitionSliceSelector() );
+        PartitionBufferPool pool = builder.allocatePool( "64K", 1, "1K" );
+
+        PartitionBuffer partitionBuffer = pool.getPartitionBuffer();
+        for ( int i = 0; i < 500; i++ )
+        {
+            partitionBuffer.writeLong( i );
+        }
+        pool.close();
+
+        File file = new File( directory, "partition-1024-0.bin" );
+        RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" );
+        try
+        {
+            assertEquals( 64 * 1024, randomAccessFile.length() );
+            for ( int i = 0; i < 500; i++ )
+            {
+                assertEquals( i, randomAccessFile.readLong() );
+            }
+        }
+        finally
+        {
+            randomAccessFile.close();
+            file.delete();
+            directory.delete();
+        }
+    }
+
+}
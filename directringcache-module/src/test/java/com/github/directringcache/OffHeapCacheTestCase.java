@@ -0,0 +1,211 @@
+package com.github.directringcache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.github.directringcache.selector.RoundRobinPartitionSliceSelector;
+
+public class OffHeapCacheTestCase
+{
+
+    @Test
+    public void testPutGetRemoveCompute()
+        throws Exception
+    {
+        PartitionBufferPool pool = newPool();
+        OffHeapCacheBuilder<String, String> builder =
+            new OffHeapCacheBuilder<String, String>( pool, Serializers.STRING, Serializers.STRING );
+        OffHeapCache<String, String> cache = builder.withBlockByteSize( 4096 ).build();
+
+        try
+        {
+            for ( int i = 0; i < 1000; i++ )
+            {
+                cache.put( "key-" + i, "value-" + i );
+            }
+            assertEquals( 1000, cache.size() );
+            for ( int i = 0; i < 1000; i++ )
+            {
+                assertEquals( "value-" + i, cache.get( "key-" + i ) );
+            }
+            assertNull( cache.get( "missing" ) );
+
+            cache.put( "key-1", "replaced" );
+            assertEquals( "replaced", cache.get( "key-1" ) );
+            assertEquals( 1000, cache.size() );
+
+            assertTrue( cache.remove( "key-2" ) );
+            assertFalse( cache.remove( "key-2" ) );
+            assertFalse( cache.containsKey( "key-2" ) );
+            assertEquals( 999, cache.size() );
+
+            RemappingFunction<String, String> append = new RemappingFunction<String, String>()
+            {
+
+                @Override
+                public String apply( String key, String value )
+                {
+                    return value == null ? "new" : value + "+";
+                }
+            };
+            assertEquals( "value-3+", cache.compute( "key-3", append ) );
+            assertEquals( "new", cache.compute( "key-2", append ) );
+            assertEquals( "value-3+", cache.get( "key-3" ) );
+
+            RemappingFunction<String, String> delete = new RemappingFunction<String, String>()
+            {
+
+                @Override
+                public String apply( String key, String value )
+                {
+                    return null;
+                }
+            };
+            assertNull( cache.compute( "key-3", delete ) );
+            assertFalse( cache.containsKey( "key-3" ) );
+
+            // Values larger than a block get a block of their own
+            byte[] large = new byte[20000];
+            large[19999] = 42;
+            OffHeapCacheBuilder<Long, byte[]> largeBuilder =
+                new OffHeapCacheBuilder<Long, byte[]>( pool, Serializers.LONG, Serializers.BYTE_ARRAY );
+            OffHeapCache<Long, byte[]> largeCache = largeBuilder.withBlockByteSize( 4096 ).build();
+            largeCache.put( 1L, large );
+            assertEquals( 42, largeCache.get( 1L )[19999] );
+            largeCache.close();
+
+            cache.clear();
+            assertEquals( 0, cache.size() );
+            assertNull( cache.get( "key-1" ) );
+        }
+        finally
+        {
+            cache.close();
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testEvictionWhenPoolIsExhausted()
+        throws Exception
+    {
+        PartitionBufferPool pool = newPool();
+        OffHeapCacheBuilder<Long, byte[]> builder =
+            new OffHeapCacheBuilder<Long, byte[]>( pool, Serializers.LONG, Serializers.BYTE_ARRAY );
+        OffHeapCache<Long, byte[]> cache = builder.withBlockByteSize( 16 * 1024 ).build();
+
+        try
+        {
+            byte[] value = new byte[1000];
+            cache.put( -1L, value );
+
+            // 10 MB of values through a 1 MB pool, the hot entry keeps its block referenced
+            for ( long i = 0; i < 10000; i++ )
+            {
+                value[0] = (byte) i;
+                cache.put( i, value );
+                assertNotNull( cache.get( -1L ) );
+            }
+
+            assertTrue( cache.getEvictionCount() > 0 );
+            assertEquals( 10001 - cache.getEvictionCount(), cache.size() );
+            assertNull( cache.get( 1000L ) );
+            assertEquals( (byte) 9999, cache.get( 9999L )[0] );
+            assertNotNull( cache.get( -1L ) );
+        }
+        finally
+        {
+            cache.close();
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentAccessWhileIndexGrows()
+        throws Exception
+    {
+        PartitionBufferBuilder poolBuilder =
+            new PartitionBufferBuilder( PartitionStrategy.POOLED_UNSAFE, new RoundRobinPartitionSliceSelector() );
+        PartitionBufferPool pool = poolBuilder.allocatePool( "8M", 4, "1K" );
+        OffHeapCacheBuilder<Long, Long> builder =
+            new OffHeapCacheBuilder<Long, Long>( pool, Serializers.LONG, Serializers.LONG );
+        final OffHeapCache<Long, Long> cache = builder.withBlockByteSize( 16 * 1024 ).withInitialCapacity( 16 ).build();
+
+        try
+        {
+            // Every stripe starts tiny, so writers keep migrating tables while the others read
+            final int threads = 8;
+            final int keysPerThread = 5000;
+            final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+            Thread[] workers = new Thread[threads];
+            for ( int t = 0; t < threads; t++ )
+            {
+                final long base = (long) t * keysPerThread;
+                workers[t] = new Thread()
+                {
+
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            for ( long i = base; i < base + keysPerThread; i++ )
+                            {
+                                cache.put( i, i * 2 );
+                                assertEquals( Long.valueOf( i * 2 ), cache.get( i ) );
+                                if ( i > base && ( i - 1 ) % 10 != 0 )
+                                {
+                                    assertEquals( Long.valueOf( ( i - 1 ) * 2 ), cache.get( i - 1 ) );
+                                }
+                                if ( i % 10 == 0 )
+                                {
+                                    assertTrue( cache.remove( i ) );
+                                }
+                            }
+                        }
+                        catch ( Throwable e )
+                        {
+                            failure.compareAndSet( null, e );
+                        }
+                    }
+                };
+                workers[t].start();
+            }
+            for ( Thread worker : workers )
+            {
+                worker.join();
+            }
+            if ( failure.get() != null )
+            {
+                throw new AssertionError( failure.get() );
+            }
+
+            assertEquals( 0, cache.getEvictionCount() );
+            assertEquals( threads * keysPerThread - threads * keysPerThread / 10, cache.size() );
+            for ( long i = 0; i < threads * keysPerThread; i++ )
+            {
+                assertEquals( i % 10 == 0 ? null : Long.valueOf( i * 2 ), cache.get( i ) );
+            }
+        }
+        finally
+        {
+            cache.close();
+            pool.close();
+        }
+    }
+
+    private PartitionBufferPool newPool()
+    {
+        PartitionBufferBuilder builder =
+            new PartitionBufferBuilder( PartitionStrategy.POOLED_UNSAFE, new RoundRobinPartitionSliceSelector() );
+        return builder.allocatePool( "1M", 4, "1K" );
+    }
+
+}
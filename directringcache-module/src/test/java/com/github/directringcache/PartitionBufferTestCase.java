@@ -1,8 +1,24 @@
 package com.github.directringcache;
 
 import static org.junit.Assert.assertEquals;
-
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -10,8 +26,10 @@ import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
 
 import com.github.directringcache.impl.BufferUtils;
+import com.github.directringcache.spi.Partition;
 import com.github.directringcache.spi.PartitionFactory;
 import com.github.directringcache.spi.PartitionSliceSelector;
+import com.github.directringcache.spi.PartitionSliceSelectorFactory;
 
 @RunWith( Parameterized.class )
 public class PartitionBufferTestCase
@@ -27,12 +45,15 @@ public class PartitionBufferTestCase
 
     private final PartitionSliceSelector partitionSliceSelector;
 
+    private final Class<PartitionSliceSelector> partitionSliceSelectorClass;
+
     public PartitionBufferTestCase( String name1, String name2, PartitionFactory partitionFactory,
                                     Class<PartitionSliceSelector> partitionSliceSelectorClass )
         throws InstantiationException, IllegalAccessException
     {
         this.partitionFactory = partitionFactory;
         this.partitionSliceSelector = partitionSliceSelectorClass.newInstance();
+        this.partitionSliceSelectorClass = partitionSliceSelectorClass;
     }
 
     @Test
@@ -208,4 +229,700 @@ public class PartitionBufferTestCase
         }
     }
 
+    @Test
+    public void testAbsoluteAccess()
+        throws Exception
+    {
+        PartitionBufferBuilder builder = new PartitionBufferBuilder( partitionFactory, partitionSliceSelector );
+        PartitionBufferPool pool = builder.allocatePool( "1M", 4, "1K" );
+
+        try
+        {
+            PartitionBuffer partitionBuffer = pool.getPartitionBuffer();
+
+            // Length header placeholder followed by fixed length records crossing slice boundaries
+            partitionBuffer.writeInt( 0 );
+            for ( int i = 0; i < 1000; i++ )
+            {
+                partitionBuffer.writeShort( (short) i );
+                partitionBuffer.writeLong( i * 31L );
+            }
+            partitionBuffer.setInt( 0, 1000 );
+
+            long writerIndex = partitionBuffer.writerIndex();
+            long readerIndex = partitionBuffer.readerIndex();
+
+            assertEquals( 1000, partitionBuffer.getInt( 0 ) );
+            for ( int i = 0; i < 1000; i++ )
+            {
+                long recordIndex = 4 + i * 10L;
+                assertEquals( (short) i, partitionBuffer.getShort( recordIndex ) );
+                assertEquals( i * 31L, partitionBuffer.getLong( recordIndex + 2 ) );
+            }
+
+            partitionBuffer.setLong( 4 + 500 * 10L + 2, -1L );
+            assertEquals( -1L, partitionBuffer.getLong( 4 + 500 * 10L + 2 ) );
+            assertEquals( (short) 501, partitionBuffer.getShort( 4 + 501 * 10L ) );
+
+            byte[] bytes = new byte[2048];
+            partitionBuffer.getBytes( 1000, bytes );
+            partitionBuffer.setBytes( 5000, bytes );
+            for ( int i = 0; i < bytes.length; i++ )
+            {
+                assertEquals( bytes[i], partitionBuffer.getByte( 5000 + i ) );
+            }
+
+            assertEquals( writerIndex, partitionBuffer.writerIndex() );
+            assertEquals( readerIndex, partitionBuffer.readerIndex() );
+
+            pool.freePartitionBuffer( partitionBuffer );
+        }
+        finally
+        {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testWritePartitionBuffer()
+        throws Exception
+    {
+        // Selectors keep per pool state, so every pool needs its own instance
+        PartitionBufferBuilder sourceBuilder = new PartitionBufferBuilder( partitionFactory, partitionSliceSelector );
+        PartitionBufferBuilder targetBuilder =
+            new PartitionBufferBuilder( partitionFactory, partitionSliceSelectorClass.newInstance() );
+        PartitionBufferPool sourcePool = sourceBuilder.allocatePool( "1M", 4, "1K" );
+        PartitionBufferPool targetPool = targetBuilder.allocatePool( "1M", 4, "4K" );
+
+        try
+        {
+            PartitionBuffer source = sourcePool.getPartitionBuffer();
+            byte[] block = new byte[10000];
+            for ( int i = 0; i < block.length; i++ )
+            {
+                block[i] = (byte) ( i * 7 );
+            }
+            source.writeBytes( block );
+
+            PartitionBuffer target = targetPool.getPartitionBuffer();
+            target.writeBytes( new byte[3] );
+            target.writePartitionBuffer( source, 7, 9000 );
+            assertEquals( 9003, target.writerIndex() );
+            assertEquals( 0, source.readerIndex() );
+            for ( int i = 0; i < 9000; i++ )
+            {
+                assertEquals( "Wrong value at position " + i, block[7 + i], target.getByte( 3 + i ) );
+            }
+
+            source.readerIndex( 5000 );
+            target.writePartitionBuffer( source );
+            assertEquals( 14003, target.writerIndex() );
+            for ( int i = 0; i < 5000; i++ )
+            {
+                assertEquals( "Wrong value at position " + i, block[5000 + i], target.getByte( 9003 + i ) );
+            }
+
+            sourcePool.freePartitionBuffer( source );
+            targetPool.freePartitionBuffer( target );
+        }
+        finally
+        {
+            sourcePool.close();
+            targetPool.close();
+        }
+    }
+
+    @Test
+    public void testByteBufferTransfer()
+        throws Exception
+    {
+        PartitionBufferBuilder builder = new PartitionBufferBuilder( partitionFactory, partitionSliceSelector );
+        PartitionBufferPool pool = builder.allocatePool( "1M", 4, "1K" );
+
+        try
+        {
+            ByteBuffer direct = ByteBuffer.allocateDirect( 10000 );
+            ByteBuffer heap = ByteBuffer.allocate( 10000 );
+            for ( int i = 0; i < 10000; i++ )
+            {
+                direct.put( i, (byte) ( i * 7 ) );
+                heap.put( i, (byte) ( i * 13 ) );
+            }
+
+            PartitionBuffer partitionBuffer = pool.getPartitionBuffer();
+            partitionBuffer.writeByte( 1 );
+            partitionBuffer.writeByteBuffer( direct );
+            partitionBuffer.writeByteBuffer( heap, 100, 5000 );
+            assertEquals( 15001, partitionBuffer.writerIndex() );
+            assertEquals( 0, direct.position() );
+            assertEquals( 0, heap.position() );
+
+            assertEquals( 1, partitionBuffer.readByte() );
+            ByteBuffer directResult = ByteBuffer.allocateDirect( 10000 );
+            partitionBuffer.readByteBuffer( directResult );
+            assertEquals( 10000, directResult.position() );
+            ByteBuffer heapResult = ByteBuffer.allocate( 5000 );
+            partitionBuffer.readByteBuffer( heapResult );
+            assertEquals( 15001, partitionBuffer.readerIndex() );
+
+            for ( int i = 0; i < 10000; i++ )
+            {
+                assertEquals( "Wrong value at position " + i, direct.get( i ), directResult.get( i ) );
+            }
+            for ( int i = 0; i < 5000; i++ )
+            {
+                assertEquals( "Wrong value at position " + i, heap.get( 100 + i ), heapResult.get( i ) );
+            }
+
+            pool.freePartitionBuffer( partitionBuffer );
+        }
+        finally
+        {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testChannelTransfer()
+        throws Exception
+    {
+        PartitionBufferBuilder builder = new PartitionBufferBuilder( partitionFactory, partitionSliceSelector );
+        PartitionBufferPool pool = builder.allocatePool( "1M", 4, "1K" );
+
+        File file = File.createTempFile( "directringcache", ".bin" );
+        RandomAccessFile randomAccessFile = new RandomAccessFile( file, "rw" );
+        try
+        {
+            FileChannel channel = randomAccessFile.getChannel();
+
+            PartitionBuffer source = pool.getPartitionBuffer();
+            source.writeByte( 1 );
+            for ( int i = 0; i < 10000; i++ )
+            {
+                source.writeByte( i * 7 );
+            }
+            assertEquals( 1, source.readByte() );
+
+            long written = 0;
+            while ( source.readable() )
+            {
+                written += source.writeTo( channel );
+            }
+            assertEquals( 10000, written );
+            assertEquals( 10001, source.readerIndex() );
+            assertEquals( 10000, channel.size() );
+
+            channel.position( 0 );
+            PartitionBuffer target = pool.getPartitionBuffer();
+            target.writeByte( 2 );
+            long read = 0;
+            long count;
+            while ( ( count = target.readFrom( channel, 4000 ) ) != -1 )
+            {
+                read += count;
+            }
+            assertEquals( 10000, read );
+            assertEquals( 10001, target.writerIndex() );
+
+            assertEquals( 2, target.readByte() );
+            for ( int i = 0; i < 10000; i++ )
+            {
+                assertEquals( "Wrong value at position " + i, (byte) ( i * 7 ), target.readByte() );
+            }
+
+            pool.freePartitionBuffer( source );
+            pool.freePartitionBuffer( target );
+        }
+        finally
+        {
+            randomAccessFile.close();
+            file.delete();
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testReadFromShortChannel()
+        throws Exception
+    {
+        PartitionBufferBuilder builder = new PartitionBufferBuilder( partitionFactory, partitionSliceSelector );
+        PartitionBufferPool pool = builder.allocatePool( "1M", 4, "1K" );
+
+        File file = File.createTempFile( "directringcache", ".bin" );
+        RandomAccessFile randomAccessFile = new RandomAccessFile( file, "rw" );
+        try
+        {
+            randomAccessFile.write( new byte[5000] );
+            FileChannel channel = randomAccessFile.getChannel();
+            channel.position( 0 );
+
+            // Read whatever is there, only the slices the channel actually filled stay with the buffer
+            PartitionBuffer partitionBuffer = pool.getPartitionBuffer();
+            assertEquals( 5000, partitionBuffer.readFrom( channel, Long.MAX_VALUE ) );
+            assertEquals( 5000, partitionBuffer.writerIndex() );
+            assertEquals( 5, partitionBuffer.slices() );
+            assertEquals( 5, pool.getUsedSliceCount() );
+
+            // Nothing is claimed at the end of the stream
+            assertEquals( -1, partitionBuffer.readFrom( channel, 1024 * 1024 ) );
+            assertEquals( 5, partitionBuffer.slices() );
+            assertEquals( 5, pool.getUsedSliceCount() );
+
+            pool.freePartitionBuffer( partitionBuffer );
+            assertEquals( 0, pool.getUsedSliceCount() );
+        }
+        finally
+        {
+            randomAccessFile.close();
+            file.delete();
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testSnapshotRestore()
+        throws Exception
+    {
+        PartitionBufferBuilder builder = new PartitionBufferBuilder( partitionFactory, partitionSliceSelector );
+        PartitionBufferPool pool = builder.withSnapshots().allocatePool( "1M", 4, "1K" );
+
+        File file = File.createTempFile( "directringcache", ".snapshot" );
+        try
+        {
+            PartitionBuffer first = pool.getPartitionBuffer();
+            for ( int i = 0; i < 1000; i++ )
+            {
+                first.writeLong( i );
+            }
+            first.readLong();
+
+            PartitionBuffer second = pool.getPartitionBuffer();
+            second.byteOrder( ByteOrder.LITTLE_ENDIAN );
+            second.writeInt( 42 );
+
+            PartitionBuffer freed = pool.getPartitionBuffer();
+            freed.writeByte( 1 );
+            pool.freePartitionBuffer( freed );
+
+            int usedSlices = pool.getUsedSliceCount();
+            pool.snapshot( file );
+            pool.close();
+
+            PartitionBufferBuilder restoreBuilder =
+                new PartitionBufferBuilder( partitionFactory, partitionSliceSelectorClass.newInstance() );
+            pool = restoreBuilder.allocatePool( "1M", 4, "1K" );
+            List<PartitionBuffer> partitionBuffers = pool.restore( file );
+            assertEquals( 2, partitionBuffers.size() );
+            assertEquals( usedSlices, pool.getUsedSliceCount() );
+
+            try
+            {
+                pool.snapshot( file );
+                fail( "Snapshots were not enabled for the restoring pool" );
+            }
+            catch ( IllegalStateException e )
+            {
+                // expected
+            }
+
+            // Live buffers are not ordered by the pool
+            int firstIndex = partitionBuffers.get( 0 ).writerIndex() == 8000 ? 0 : 1;
+            PartitionBuffer restoredFirst = partitionBuffers.get( firstIndex );
+            PartitionBuffer restoredSecond = partitionBuffers.get( 1 - firstIndex );
+
+            assertEquals( 8, restoredFirst.readerIndex() );
+            assertEquals( 8000, restoredFirst.writerIndex() );
+            for ( int i = 1; i < 1000; i++ )
+            {
+                assertEquals( i, restoredFirst.readLong() );
+            }
+
+            assertEquals( ByteOrder.LITTLE_ENDIAN, restoredSecond.byteOrder() );
+            assertEquals( 42, restoredSecond.readInt() );
+
+            restoredFirst.free();
+            restoredSecond.free();
+        }
+        finally
+        {
+            file.delete();
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testSliceMagazines()
+        throws Exception
+    {
+        final List<Partition> partitions = new ArrayList<Partition>();
+        PartitionFactory recordingPartitionFactory = new PartitionFactory()
+        {
+
+            @Override
+            public Partition newPartition( int partitionIndex, int sliceByteSize, int slices,
+                                           PartitionSliceSelector partitionSliceSelector )
+            {
+                Partition partition =
+                    partitionFactory.newPartition( partitionIndex, sliceByteSize, slices, partitionSliceSelector );
+                partitions.add( partition );
+                return partition;
+            }
+        };
+        PartitionBufferBuilder builder =
+            new PartitionBufferBuilder( recordingPartitionFactory, partitionSliceSelector );
+        final PartitionBufferPool pool = builder.withMagazineDepth( 16 ).allocatePool( "64K", 4, "1K" );
+
+        try
+        {
+            // The first allocation of a thread claims half a magazine on top and parks it
+            PartitionBuffer first = pool.getPartitionBuffer();
+            assertEquals( 1, pool.getUsedSliceCount() );
+            assertEquals( 1 + 8, usedSlices( partitions ) );
+            pool.freePartitionBuffer( first );
+            assertEquals( 0, pool.getUsedSliceCount() );
+            assertEquals( 1 + 8, usedSlices( partitions ) );
+
+            for ( int o = 0; o < 10; o++ )
+            {
+                PartitionBuffer partitionBuffer = pool.getPartitionBuffer();
+                for ( int i = 0; i < 5000; i++ )
+                {
+                    partitionBuffer.writeByte( i );
+                }
+                assertEquals( 5, pool.getUsedSliceCount() );
+                pool.freePartitionBuffer( partitionBuffer );
+                assertEquals( 0, pool.getUsedSliceCount() );
+                assertEquals( 64, pool.getFreeSliceCount() );
+            }
+
+            // Park slices in the magazine of a different thread
+            Thread thread = new Thread( new Runnable()
+            {
+
+                public void run()
+                {
+                    PartitionBuffer partitionBuffer = pool.getPartitionBuffer();
+                    for ( int i = 0; i < 10000; i++ )
+                    {
+                        partitionBuffer.writeByte( i );
+                    }
+                    pool.freePartitionBuffer( partitionBuffer );
+                }
+            } );
+            thread.start();
+            thread.join();
+
+            // The next thread that shows up hands the parked slices of the terminated one back to the partitions
+            thread = new Thread( new Runnable()
+            {
+
+                public void run()
+                {
+                    PartitionBuffer partitionBuffer = pool.getPartitionBuffer();
+                    partitionBuffer.writeByte( 1 );
+                    pool.freePartitionBuffer( partitionBuffer );
+                }
+            } );
+            thread.start();
+            thread.join();
+            // Only the magazines of this thread and the last one still hold slices
+            assertEquals( 9 + 9, usedSlices( partitions ) );
+
+            PartitionBuffer partitionBuffer = pool.getPartitionBuffer();
+            for ( int i = 0; i < 64 * 1024; i++ )
+            {
+                partitionBuffer.writeByte( i );
+            }
+            assertEquals( 64, pool.getUsedSliceCount() );
+            assertEquals( 0, pool.getFreeSliceCount() );
+            pool.freePartitionBuffer( partitionBuffer );
+        }
+        finally
+        {
+            pool.close();
+        }
+    }
+
+    private static int usedSlices( List<Partition> partitions )
+    {
+        int used = 0;
+        for ( Partition partition : partitions )
+        {
+            used += partition.used();
+        }
+        return used;
+    }
+
+    @Test
+    public void testBatchAllocation()
+        throws Exception
+    {
+        PartitionBufferBuilder builder = new PartitionBufferBuilder( partitionFactory, partitionSliceSelector );
+        PartitionBufferPool pool = builder.allocatePool( "64K", 4, "1K" );
+
+        try
+        {
+            PartitionBuffer partitionBuffer = pool.getPartitionBuffer();
+            partitionBuffer.writeBytes( new byte[40 * 1024] );
+            assertEquals( 40, partitionBuffer.slices() );
+            assertEquals( 40, pool.getUsedSliceCount() );
+
+            PartitionBuffer overflow = pool.getPartitionBuffer();
+            try
+            {
+                overflow.writeBytes( new byte[30 * 1024] );
+                fail( "Pool should not be able to serve 30 more slices" );
+            }
+            catch ( RuntimeException e )
+            {
+                // Partially claimed slices have to be released again
+                assertEquals( 41, pool.getUsedSliceCount() );
+            }
+
+            overflow.writeBytes( new byte[24 * 1024] );
+            assertEquals( 0, pool.getFreeSliceCount() );
+
+            pool.freePartitionBuffer( partitionBuffer );
+            pool.freePartitionBuffer( overflow );
+            assertEquals( 64, pool.getFreeSliceCount() );
+        }
+        finally
+        {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testEnsureWritableAndLargeSliceTable()
+        throws Exception
+    {
+        PartitionBufferBuilder builder = new PartitionBufferBuilder( partitionFactory, partitionSliceSelector );
+        PartitionBufferPool pool = builder.allocatePool( "4M", 4, "1K" );
+
+        try
+        {
+            PartitionBuffer partitionBuffer = pool.getPartitionBuffer();
+            partitionBuffer.writeByte( 1 );
+            partitionBuffer.ensureWritable( 10 * 1024 );
+            assertEquals( 11, partitionBuffer.slices() );
+            assertEquals( 1, partitionBuffer.writerIndex() );
+            partitionBuffer.ensureWritable( 1024 );
+            assertEquals( 11, partitionBuffer.slices() );
+
+            // Crosses the first chunk of the slice table
+            for ( int i = 0; i < 2500 * 128; i++ )
+            {
+                partitionBuffer.writeLong( i );
+            }
+            assertEquals( 2501, partitionBuffer.slices() );
+            assertEquals( 2501 * 1024, partitionBuffer.maxCapacity() );
+
+            assertEquals( 1, partitionBuffer.readByte() );
+            for ( int i = 0; i < 2500 * 128; i++ )
+            {
+                assertEquals( i, partitionBuffer.readLong() );
+            }
+
+            pool.freePartitionBuffer( partitionBuffer );
+            assertEquals( 0, partitionBuffer.slices() );
+            assertEquals( 4096, pool.getFreeSliceCount() );
+        }
+        finally
+        {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testSliceSizeClasses()
+        throws Exception
+    {
+        PartitionBufferBuilder builder = new PartitionBufferBuilder( partitionFactory, partitionSliceSelector );
+        try
+        {
+            builder.allocateSizeClassedPool( "3M", 4, 2, "1K", "4K", "16K" );
+            fail( "A single selector instance cannot serve several size classes" );
+        }
+        catch ( IllegalStateException e )
+        {
+            // expected
+        }
+
+        PartitionSliceSelectorFactory partitionSliceSelectorFactory = new PartitionSliceSelectorFactory()
+        {
+
+            @Override
+            public PartitionSliceSelector newPartitionSliceSelector()
+            {
+                try
+                {
+                    return partitionSliceSelectorClass.newInstance();
+                }
+                catch ( Exception e )
+                {
+                    throw new RuntimeException( e );
+                }
+            }
+        };
+        builder = new PartitionBufferBuilder( partitionFactory, partitionSliceSelectorFactory );
+        PartitionBufferPool pool = builder.allocateSizeClassedPool( "3M", 4, 2, "1K", "4K", "16K" );
+
+        try
+        {
+            assertEquals( 3, pool.getSizeClassCount() );
+            assertEquals( 4096, pool.getSliceByteSize( 1 ) );
+            assertEquals( 1024 + 256 + 64, pool.getSliceCount() );
+            assertEquals( 3 * 1024 * 1024, pool.getAllocatedMemory() );
+
+            PartitionBuffer partitionBuffer = pool.getPartitionBuffer();
+            assertEquals( 1, pool.getUsedSliceCount( 0 ) );
+
+            // Unaligned longs cross every size class boundary
+            partitionBuffer.writeByte( 7 );
+            for ( int i = 0; i < 12800; i++ )
+            {
+                partitionBuffer.writeLong( i );
+            }
+            assertEquals( 10, partitionBuffer.slices() );
+            assertEquals( 2 * 1024 + 2 * 4096 + 6 * 16384, partitionBuffer.maxCapacity() );
+            assertEquals( 2, pool.getUsedSliceCount( 0 ) );
+            assertEquals( 2, pool.getUsedSliceCount( 1 ) );
+            assertEquals( 6, pool.getUsedSliceCount( 2 ) );
+
+            assertEquals( 7, partitionBuffer.readByte() );
+            for ( int i = 0; i < 12800; i++ )
+            {
+                assertEquals( i, partitionBuffer.readLong() );
+            }
+
+            byte[] bytes = new byte[16 * 1024];
+            partitionBuffer.getBytes( 1024 - 3, bytes, 0, bytes.length );
+            ByteBuffer expected = ByteBuffer.allocate( 16 * 1024 + 8 );
+            for ( int i = 127; i < 127 + expected.capacity() / 8; i++ )
+            {
+                expected.putLong( i );
+            }
+            for ( int i = 0; i < bytes.length; i++ )
+            {
+                assertEquals( expected.get( i + 4 ), bytes[i] );
+            }
+
+            pool.freePartitionBuffer( partitionBuffer );
+            assertEquals( 0, pool.getUsedSliceCount() );
+            assertEquals( 64, pool.getFreeSliceCount( 2 ) );
+        }
+        finally
+        {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testBlockingAndFutureAcquisition()
+        throws Exception
+    {
+        PartitionBufferBuilder builder = new PartitionBufferBuilder( partitionFactory, partitionSliceSelector );
+        final PartitionBufferPool pool = builder.allocatePool( "16K", 1, "1K" );
+
+        try
+        {
+            List<PartitionBuffer> partitionBuffers = new ArrayList<PartitionBuffer>();
+            for ( int i = 0; i < 16; i++ )
+            {
+                partitionBuffers.add( pool.getPartitionBuffer() );
+            }
+            assertNull( pool.getPartitionBuffer( 20, TimeUnit.MILLISECONDS ) );
+
+            // Waiters are served in order of arrival
+            Future<PartitionBuffer> first = pool.requestPartitionBuffer();
+            Future<PartitionBuffer> second = pool.requestPartitionBuffer();
+            Future<PartitionBuffer> cancelled = pool.requestPartitionBuffer();
+            assertFalse( first.isDone() );
+            assertTrue( cancelled.cancel( false ) );
+            try
+            {
+                pool.getPartitionBuffer();
+                fail( "Callers that do not wait must not overtake the waiting ones" );
+            }
+            catch ( RuntimeException e )
+            {
+                // expected
+            }
+
+            partitionBuffers.remove( 0 ).free();
+            assertTrue( first.isDone() );
+            assertFalse( second.isDone() );
+            partitionBuffers.remove( 0 ).free();
+            assertTrue( second.isDone() );
+            first.get().free();
+            assertEquals( 1, pool.getFreeSliceCount() );
+
+            second.get().writeInt( 42 );
+            partitionBuffers.add( second.get() );
+            partitionBuffers.add( pool.getPartitionBuffer() );
+
+            final AtomicReference<PartitionBuffer> blocked = new AtomicReference<PartitionBuffer>();
+            Thread waiter = new Thread()
+            {
+
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        blocked.set( pool.getPartitionBuffer( 10, TimeUnit.SECONDS ) );
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        throw new RuntimeException( e );
+                    }
+                }
+            };
+            waiter.start();
+            Thread.sleep( 50 );
+            partitionBuffers.remove( 0 ).free();
+            waiter.join( 10000 );
+            assertNotNull( blocked.get() );
+
+            // Callbacks are told by the thread that freed the slices
+            final AtomicReference<PartitionBuffer> completed = new AtomicReference<PartitionBuffer>();
+            final AtomicBoolean callbackCancelled = new AtomicBoolean();
+            PartitionBufferCallback callback = new PartitionBufferCallback()
+            {
+
+                @Override
+                public void completed( PartitionBuffer partitionBuffer )
+                {
+                    completed.set( partitionBuffer );
+                }
+
+                @Override
+                public void cancelled()
+                {
+                    callbackCancelled.set( true );
+                }
+            };
+            Future<PartitionBuffer> callbackFuture = pool.requestPartitionBuffer( callback );
+            Future<PartitionBuffer> cancelledCallbackFuture = pool.requestPartitionBuffer( callback );
+            assertNull( completed.get() );
+            partitionBuffers.remove( 0 ).free();
+            assertNotNull( completed.get() );
+            assertTrue( completed.get() == callbackFuture.get() );
+            assertTrue( cancelledCallbackFuture.cancel( false ) );
+            assertTrue( callbackCancelled.get() );
+            partitionBuffers.add( completed.get() );
+
+            blocked.get().free();
+            for ( PartitionBuffer partitionBuffer : partitionBuffers )
+            {
+                partitionBuffer.free();
+            }
+            assertEquals( 16, pool.getFreeSliceCount() );
+        }
+        finally
+        {
+            pool.close();
+        }
+    }
+
 }
@@ -0,0 +1,118 @@
+package com.github.directringcache;
+
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.carrotsearch.junitbenchmarks.AbstractBenchmark;
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.Clock;
+import com.carrotsearch.junitbenchmarks.annotation.BenchmarkHistoryChart;
+import com.carrotsearch.junitbenchmarks.annotation.LabelType;
+import com.github.directringcache.selector.RoundRobinPartitionSliceSelector;
+
+@RunWith( Parameterized.class )
+public class PrimitiveAccessBenchmarker
+    extends AbstractBenchmark
+{
+
+    private static final int LONGS_PER_ROUND = 64 * 1024;
+
+    @Parameters( name = "Execution {index} - {0}" )
+    public static Collection<Object[]> parameters()
+    {
+        List<Object[]> parameters = new LinkedList<Object[]>();
+        for ( PartitionStrategy partitionStrategy : PartitionStrategy.values() )
+        {
+            parameters.add( new Object[] { partitionStrategy } );
+        }
+        return parameters;
+    }
+
+    private final PartitionBufferPool pool;
+
+    public PrimitiveAccessBenchmarker( PartitionStrategy partitionStrategy )
+    {
+        PartitionBufferBuilder builder =
+            new PartitionBufferBuilder( partitionStrategy, new RoundRobinPartitionSliceSelector() );
+        this.pool = builder.allocatePool( "16M", 4, "8K" );
+    }
+
+    @Test
+    @BenchmarkHistoryChart( labelWith = LabelType.RUN_ID, maxRuns = 20 )
+    @BenchmarkOptions( warmupRounds = 20, benchmarkRounds = 200, clock = Clock.NANO_TIME )
+    public void benchmarkWordWideLongs()
+        throws Exception
+    {
+        PartitionBuffer partitionBuffer = pool.getPartitionBuffer();
+
+        try
+        {
+            for ( int i = 0; i < LONGS_PER_ROUND; i++ )
+            {
+                partitionBuffer.writeLong( i );
+            }
+            for ( int i = 0; i < LONGS_PER_ROUND; i++ )
+            {
+                if ( partitionBuffer.readLong() != i )
+                {
+                    throw new Exception( "Values don't match at index=" + i );
+                }
+            }
+        }
+        finally
+        {
+            partitionBuffer.free();
+        }
+    }
+
+    @Test
+    @BenchmarkHistoryChart( labelWith = LabelType.RUN_ID, maxRuns = 20 )
+    @BenchmarkOptions( warmupRounds = 20, benchmarkRounds = 200, clock = Clock.NANO_TIME )
+    public void benchmarkByteWiseLongs()
+        throws Exception
+    {
+        PartitionBuffer partitionBuffer = pool.getPartitionBuffer();
+
+        try
+        {
+            // Mirrors the former byte by byte assembly of longs as a baseline
+            for ( int i = 0; i < LONGS_PER_ROUND; i++ )
+            {
+                long value = i;
+                for ( int shift = 56; shift >= 0; shift -= 8 )
+                {
+                    partitionBuffer.writeByte( (byte) ( value >> shift ) );
+                }
+            }
+            for ( int i = 0; i < LONGS_PER_ROUND; i++ )
+            {
+                long value = 0;
+                for ( int b = 0; b < 8; b++ )
+                {
+                    value = ( value << 8 ) | ( partitionBuffer.readByte() & 0xFFL );
+                }
+                if ( value != i )
+                {
+                    throw new Exception( "Values don't match at index=" + i );
+                }
+            }
+        }
+        finally
+        {
+            partitionBuffer.free();
+        }
+    }
+
+    @Override
+    protected void finalize()
+    {
+        pool.close();
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.github.directringcache;
+
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.carrotsearch.junitbenchmarks.AbstractBenchmark;
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.Clock;
+import com.carrotsearch.junitbenchmarks.annotation.BenchmarkHistoryChart;
+import com.carrotsearch.junitbenchmarks.annotation.LabelType;
+import com.github.directringcache.spi.PartitionSliceSelector;
+
+@RunWith( Parameterized.class )
+public class SelectorBenchmarker
+    extends AbstractBenchmark
+{
+
+    private static final int BUFFERS_PER_ROUND = 10;
+
+    @Parameters( name = "Execution {index} - {0}" )
+    public static Collection<Object[]> parameters()
+    {
+        List<Object[]> parameters = new LinkedList<Object[]>();
+        for ( Object partitionSliceSelector : TestCaseConstants.PARTITION_SLICE_SELECTORS )
+        {
+            parameters.add( new Object[] { ( (Class<?>) partitionSliceSelector ).getSimpleName(),
+                partitionSliceSelector } );
+        }
+        return parameters;
+    }
+
+    private final PartitionBufferPool pool;
+
+    public SelectorBenchmarker( String name, Class<PartitionSliceSelector> partitionSliceSelectorClass )
+        throws Exception
+    {
+        // Enough slices for every thread, so the numbers show selection cost and not exhaustion
+        PartitionBufferBuilder builder =
+            new PartitionBufferBuilder( PartitionStrategy.POOLED_UNSAFE, partitionSliceSelectorClass.newInstance() );
+        this.pool = builder.allocatePool( "32M", 32, "1K" );
+    }
+
+    @Test
+    @BenchmarkHistoryChart( labelWith = LabelType.RUN_ID, maxRuns = 20 )
+    @BenchmarkOptions( warmupRounds = 100, benchmarkRounds = 3200, clock = Clock.NANO_TIME, concurrency = 1 )
+    public void benchmark1Thread()
+        throws Exception
+    {
+        acquireAndFree();
+    }
+
+    @Test
+    @BenchmarkHistoryChart( labelWith = LabelType.RUN_ID, maxRuns = 20 )
+    @BenchmarkOptions( warmupRounds = 100, benchmarkRounds = 3200, clock = Clock.NANO_TIME, concurrency = 4 )
+    public void benchmark4Threads()
+        throws Exception
+    {
+        acquireAndFree();
+    }
+
+    @Test
+    @BenchmarkHistoryChart( labelWith = LabelType.RUN_ID, maxRuns = 20 )
+    @BenchmarkOptions( warmupRounds = 100, benchmarkRounds = 3200, clock = Clock.NANO_TIME, concurrency = 16 )
+    public void benchmark16Threads()
+        throws Exception
+    {
+        acquireAndFree();
+    }
+
+    private void acquireAndFree()
+    {
+        PartitionBuffer[] partitionBuffers = new PartitionBuffer[BUFFERS_PER_ROUND];
+        for ( int round = 0; round < 100; round++ )
+        {
+            for ( int i = 0; i < partitionBuffers.length; i++ )
+            {
+                partitionBuffers[i] = pool.getPartitionBuffer();
+            }
+            for ( int i = 0; i < partitionBuffers.length; i++ )
+            {
+                partitionBuffers[i].free();
+            }
+        }
+    }
+
+    @Override
+    protected void finalize()
+    {
+        pool.close();
+    }
+
+}
@@ -0,0 +1,410 @@
+package com.github.directringcache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.github.directringcache.impl.UnsafePooledPartition;
+import com.github.directringcache.selector.AdaptivePartitionSliceSelector;
+import com.github.directringcache.selector.ThreadLocalPartitionSliceSelector;
+import com.github.directringcache.spi.Partition;
+import com.github.directringcache.spi.PartitionSlice;
+
+public class SelectorTestCase
+{
+
+    @Test
+    public void testWorkStealingWhenAllPartitionsAreOwned()
+        throws Exception
+    {
+        ThreadLocalPartitionSliceSelector partitionSliceSelector = new ThreadLocalPartitionSliceSelector();
+        PartitionBufferBuilder builder =
+            new PartitionBufferBuilder( PartitionStrategy.POOLED_UNSAFE, partitionSliceSelector );
+        final PartitionBufferPool pool = builder.allocatePool( "64K", 4, "1K" );
+
+        final CountDownLatch owned = new CountDownLatch( 4 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        Thread[] owners = new Thread[4];
+        try
+        {
+            // Every partition gets an owner that keeps one slice of it
+            for ( int i = 0; i < owners.length; i++ )
+            {
+                owners[i] = new Thread()
+                {
+
+                    @Override
+                    public void run()
+                    {
+                        PartitionBuffer partitionBuffer = pool.getPartitionBuffer();
+                        owned.countDown();
+                        try
+                        {
+                            release.await();
+                        }
+                        catch ( InterruptedException e )
+                        {
+                            Thread.currentThread().interrupt();
+                        }
+                        partitionBuffer.free();
+                    }
+                };
+                owners[i].start();
+            }
+            owned.await();
+
+            // Nothing is left to assign to this thread, so every slice is stolen from the owners
+            PartitionBuffer[] partitionBuffers = new PartitionBuffer[60];
+            for ( int i = 0; i < partitionBuffers.length; i++ )
+            {
+                partitionBuffers[i] = pool.getPartitionBuffer();
+            }
+            assertEquals( 60, partitionSliceSelector.getStealCount() );
+            assertEquals( 0, pool.getFreeSliceCount() );
+
+            try
+            {
+                pool.getPartitionBuffer();
+                fail( "Pool must be exhausted" );
+            }
+            catch ( RuntimeException e )
+            {
+                // expected
+            }
+
+            // Stolen slices go back to the partitions they came from
+            for ( PartitionBuffer partitionBuffer : partitionBuffers )
+            {
+                partitionBuffer.free();
+            }
+            assertEquals( 60, pool.getFreeSliceCount() );
+        }
+        finally
+        {
+            release.countDown();
+            for ( Thread owner : owners )
+            {
+                if ( owner != null )
+                {
+                    owner.join();
+                }
+            }
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testPartitionsOfTerminatedThreadsAreReclaimed()
+        throws Exception
+    {
+        ThreadLocalPartitionSliceSelector partitionSliceSelector = new ThreadLocalPartitionSliceSelector();
+        PartitionBufferBuilder builder =
+            new PartitionBufferBuilder( PartitionStrategy.POOLED_UNSAFE, partitionSliceSelector );
+        final PartitionBufferPool pool = builder.allocatePool( "64K", 4, "1K" );
+
+        try
+        {
+            // A churning thread pool, every worker takes over the partition of the one before
+            for ( int i = 0; i < 4; i++ )
+            {
+                Thread worker = new Thread()
+                {
+
+                    @Override
+                    public void run()
+                    {
+                        pool.getPartitionBuffer().free();
+                    }
+                };
+                worker.start();
+                worker.join();
+            }
+            assertEquals( 3, partitionSliceSelector.getReclaimCount() );
+
+            // The same goes for any new thread, it gets a partition of its own instead of stealing
+            PartitionBuffer[] partitionBuffers = new PartitionBuffer[16];
+            for ( int i = 0; i < partitionBuffers.length; i++ )
+            {
+                partitionBuffers[i] = pool.getPartitionBuffer();
+            }
+            assertEquals( 4, partitionSliceSelector.getReclaimCount() );
+            assertEquals( 0, partitionSliceSelector.getStealCount() );
+            for ( PartitionBuffer partitionBuffer : partitionBuffers )
+            {
+                partitionBuffer.free();
+            }
+        }
+        finally
+        {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testAdaptiveSelectorRebindsThreadsOffHotPartitions()
+        throws Exception
+    {
+        final AdaptivePartitionSliceSelector partitionSliceSelector = new AdaptivePartitionSliceSelector();
+        final Partition[] partitions = new Partition[4];
+        for ( int i = 0; i < partitions.length; i++ )
+        {
+            Partition partition =
+                UnsafePooledPartition.UNSAFE_PARTITION_FACTORY.newPartition( i, 1024, 256, partitionSliceSelector );
+            partitions[i] = i == 0 ? new HotPartition( partition ) : partition;
+        }
+        final Partition[] firstPartition = new Partition[] { partitions[0] };
+
+        // Four threads bind while only the first partition exists, like a pool that grows later
+        Worker[] workers = new Worker[4];
+        try
+        {
+            for ( int i = 0; i < workers.length; i++ )
+            {
+                workers[i] = new Worker( partitionSliceSelector, firstPartition, partitions );
+                workers[i].start();
+                workers[i].runPhase();
+            }
+            assertArrayEquals( new int[] { 4 }, partitionSliceSelector.getBoundThreadCounts() );
+            assertEquals( 4, partitionSliceSelector.getBindCount() );
+
+            // The first partition keeps reporting contention, so threads move off it until the load is even
+            for ( Worker worker : workers )
+            {
+                worker.runPhase();
+            }
+            assertArrayEquals( new int[] { 1, 1, 1, 1 }, partitionSliceSelector.getBoundThreadCounts() );
+            assertEquals( 3, partitionSliceSelector.getRebindCount() );
+
+            // Once balanced nobody moves anymore
+            for ( Worker worker : workers )
+            {
+                worker.runPhase();
+            }
+            assertEquals( 3, partitionSliceSelector.getRebindCount() );
+        }
+        finally
+        {
+            for ( Worker worker : workers )
+            {
+                if ( worker != null )
+                {
+                    worker.interrupt();
+                    worker.join();
+                }
+            }
+            for ( Partition partition : partitions )
+            {
+                partition.close();
+            }
+        }
+    }
+
+    @Test
+    public void testAdaptiveSelectorForgetsTerminatedThreadsAndReplacedPartitions()
+        throws Exception
+    {
+        AdaptivePartitionSliceSelector partitionSliceSelector = new AdaptivePartitionSliceSelector();
+        Partition[] partitions = new Partition[2];
+        for ( int i = 0; i < partitions.length; i++ )
+        {
+            partitions[i] =
+                UnsafePooledPartition.UNSAFE_PARTITION_FACTORY.newPartition( i, 1024, 16, partitionSliceSelector );
+        }
+
+        try
+        {
+            // Every new thread gives back the place of the terminated one before it
+            for ( int i = 0; i < 4; i++ )
+            {
+                selectOnNewThread( partitionSliceSelector, partitions );
+            }
+            assertEquals( 3, partitionSliceSelector.getReclaimCount() );
+            assertArrayEquals( new int[] { 1, 0 }, partitionSliceSelector.getBoundThreadCounts() );
+
+            // This thread binds to the first partition, which is then retired and replaced by the pool
+            PartitionSlice slice = partitionSliceSelector.selectPartitionSlice( partitions );
+            slice.getPartition().free( slice );
+            assertEquals( 0, slice.getPartition().getPartitionIndex() );
+            partitions[0].close();
+            partitions[0] =
+                UnsafePooledPartition.UNSAFE_PARTITION_FACTORY.newPartition( 0, 1024, 16, partitionSliceSelector );
+
+            // The replacement starts without the threads bound to the partition it replaced
+            selectOnNewThread( partitionSliceSelector, partitions );
+            assertArrayEquals( new int[] { 1, 0 }, partitionSliceSelector.getBoundThreadCounts() );
+
+            slice = partitionSliceSelector.selectPartitionSlice( partitions );
+            slice.getPartition().free( slice );
+            assertEquals( 1, slice.getPartition().getPartitionIndex() );
+            assertArrayEquals( new int[] { 1, 1 }, partitionSliceSelector.getBoundThreadCounts() );
+        }
+        finally
+        {
+            for ( Partition partition : partitions )
+            {
+                partition.close();
+            }
+        }
+    }
+
+    private static void selectOnNewThread( final AdaptivePartitionSliceSelector partitionSliceSelector,
+                                           final Partition[] partitions )
+        throws InterruptedException
+    {
+        Thread thread = new Thread()
+        {
+
+            @Override
+            public void run()
+            {
+                PartitionSlice slice = partitionSliceSelector.selectPartitionSlice( partitions );
+                slice.getPartition().free( slice );
+            }
+        };
+        thread.start();
+        thread.join();
+    }
+
+    private static class Worker
+        extends Thread
+    {
+
+        private final Semaphore start = new Semaphore( 0 );
+
+        private final Semaphore finished = new Semaphore( 0 );
+
+        private final AdaptivePartitionSliceSelector partitionSliceSelector;
+
+        private final Partition[][] phases;
+
+        private Worker( AdaptivePartitionSliceSelector partitionSliceSelector, Partition[]... phases )
+        {
+            this.partitionSliceSelector = partitionSliceSelector;
+            this.phases = phases;
+        }
+
+        private void runPhase()
+            throws InterruptedException
+        {
+            start.release();
+            finished.acquire();
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                for ( int phase = 0; ; phase++ )
+                {
+                    start.acquire();
+                    Partition[] partitions = phases[Math.min( phase, phases.length - 1 )];
+                    for ( int i = 0; i < ( phase == 0 ? 1 : 100 ); i++ )
+                    {
+                        PartitionSlice slice = partitionSliceSelector.selectPartitionSlice( partitions );
+                        slice.getPartition().free( slice );
+                    }
+                    finished.release();
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                // done
+            }
+        }
+    }
+
+    private static class HotPartition
+        implements Partition
+    {
+
+        private final AtomicLong contention = new AtomicLong();
+
+        private final Partition partition;
+
+        private HotPartition( Partition partition )
+        {
+            this.partition = partition;
+        }
+
+        @Override
+        public long getContentionCount()
+        {
+            // Simulates lots of lost CAS claims between any two samples
+            return contention.addAndGet( 100 );
+        }
+
+        @Override
+        public int available()
+        {
+            return partition.available();
+        }
+
+        @Override
+        public int used()
+        {
+            return partition.used();
+        }
+
+        @Override
+        public int getSliceCount()
+        {
+            return partition.getSliceCount();
+        }
+
+        @Override
+        public int getSliceByteSize()
+        {
+            return partition.getSliceByteSize();
+        }
+
+        @Override
+        public int getPartitionIndex()
+        {
+            return partition.getPartitionIndex();
+        }
+
+        @Override
+        public PartitionSlice get()
+        {
+            return partition.get();
+        }
+
+        @Override
+        public int get( int count, PartitionSlice[] slices, int offset )
+        {
+            return partition.get( count, slices, offset );
+        }
+
+        @Override
+        public void free( PartitionSlice slice )
+        {
+            partition.free( slice );
+        }
+
+        @Override
+        public void close()
+        {
+            partition.close();
+        }
+
+        @Override
+        public boolean isPooled()
+        {
+            return partition.isPooled();
+        }
+
+        @Override
+        public boolean isClosed()
+        {
+            return partition.isClosed();
+        }
+    }
+
+}
@@ -4,12 +4,17 @@ import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 
+import com.github.directringcache.impl.BuddyPooledPartition;
 import com.github.directringcache.impl.ByteBufferPooledPartition;
 import com.github.directringcache.impl.ByteBufferUnpooledPartition;
+import com.github.directringcache.impl.MappedFilePooledPartition;
 import com.github.directringcache.impl.UnsafePooledPartition;
 import com.github.directringcache.impl.UnsafeUnpooledPartition;
+import com.github.directringcache.selector.AdaptivePartitionSliceSelector;
+import com.github.directringcache.selector.CarrierLocalPartitionSliceSelector;
 import com.github.directringcache.selector.ProcessorLocalPartitionSliceSelector;
 import com.github.directringcache.selector.RoundRobinPartitionSliceSelector;
+import com.github.directringcache.selector.StripedPartitionSliceSelector;
 import com.github.directringcache.selector.ThreadLocalPartitionSliceSelector;
 
 public class TestCaseConstants
@@ -18,12 +23,17 @@ public class TestCaseConstants
         new Object[] { ByteBufferPooledPartition.DIRECT_BYTEBUFFER_PARTITION_FACTORY,
             ByteBufferPooledPartition.HEAP_BYTEBUFFER_PARTITION_FACTORY,
             UnsafePooledPartition.UNSAFE_PARTITION_FACTORY,
+            UnsafePooledPartition.UNSAFE_ARENA_PARTITION_FACTORY,
+            BuddyPooledPartition.UNSAFE_BUDDY_PARTITION_FACTORY,
+            MappedFilePooledPartition.MAPPED_FILE_PARTITION_FACTORY,
             ByteBufferUnpooledPartition.DIRECT_BYTEBUFFER_PARTITION_FACTORY,
             ByteBufferUnpooledPartition.HEAP_BYTEBUFFER_PARTITION_FACTORY,
             UnsafeUnpooledPartition.UNSAFE_PARTITION_FACTORY };
 
     public static final Object[] PARTITION_SLICE_SELECTORS = new Object[] { RoundRobinPartitionSliceSelector.class,
-        ThreadLocalPartitionSliceSelector.class, ProcessorLocalPartitionSliceSelector.class };
+        ThreadLocalPartitionSliceSelector.class, ProcessorLocalPartitionSliceSelector.class,
+        StripedPartitionSliceSelector.class, AdaptivePartitionSliceSelector.class,
+        CarrierLocalPartitionSliceSelector.class };
 
     public static final Collection<Object[]> EXECUTION_PARAMETER_MUTATIONS = buildExecutionParameterMutations();
 
@@ -40,6 +50,10 @@ public class TestCaseConstants
         {
             partitionFactoryName += "{Heap}";
         }
+        else if ( partitionFactory == UnsafePooledPartition.UNSAFE_ARENA_PARTITION_FACTORY )
+        {
+            partitionFactoryName += "{Arena}";
+        }
         return partitionFactoryName;
     }
 
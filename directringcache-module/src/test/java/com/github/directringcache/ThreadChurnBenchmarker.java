@@ -0,0 +1,88 @@
+package com.github.directringcache;
+
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.carrotsearch.junitbenchmarks.AbstractBenchmark;
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.Clock;
+import com.carrotsearch.junitbenchmarks.annotation.BenchmarkHistoryChart;
+import com.carrotsearch.junitbenchmarks.annotation.LabelType;
+import com.github.directringcache.selector.CarrierLocalPartitionSliceSelector;
+import com.github.directringcache.selector.ThreadLocalPartitionSliceSelector;
+import com.github.directringcache.spi.PartitionSliceSelector;
+
+@RunWith( Parameterized.class )
+public class ThreadChurnBenchmarker
+    extends AbstractBenchmark
+{
+
+    private static final int THREADS_PER_ROUND = 64;
+
+    private static final int BUFFERS_PER_THREAD = 4;
+
+    @Parameters( name = "Execution {index} - {0}" )
+    public static Collection<Object[]> parameters()
+    {
+        List<Object[]> parameters = new LinkedList<Object[]>();
+        parameters.add( new Object[] { "ThreadLocalPartitionSliceSelector", ThreadLocalPartitionSliceSelector.class } );
+        parameters.add( new Object[] { "CarrierLocalPartitionSliceSelector",
+            CarrierLocalPartitionSliceSelector.class } );
+        return parameters;
+    }
+
+    private final PartitionBufferPool pool;
+
+    public ThreadChurnBenchmarker( String name, Class<PartitionSliceSelector> partitionSliceSelectorClass )
+        throws Exception
+    {
+        PartitionBufferBuilder builder =
+            new PartitionBufferBuilder( PartitionStrategy.POOLED_UNSAFE, partitionSliceSelectorClass.newInstance() );
+        this.pool = builder.allocatePool( "16M", 16, "1K" );
+    }
+
+    @Test
+    @BenchmarkHistoryChart( labelWith = LabelType.RUN_ID, maxRuns = 20 )
+    @BenchmarkOptions( warmupRounds = 20, benchmarkRounds = 200, clock = Clock.NANO_TIME )
+    public void benchmarkShortLivedThreads()
+        throws Exception
+    {
+        // Stands in for virtual threads, every task runs on a thread the selector has never seen before
+        Thread[] threads = new Thread[THREADS_PER_ROUND];
+        for ( int i = 0; i < threads.length; i++ )
+        {
+            threads[i] = new Thread()
+            {
+
+                @Override
+                public void run()
+                {
+                    for ( int i = 0; i < BUFFERS_PER_THREAD; i++ )
+                    {
+                        PartitionBuffer partitionBuffer = pool.getPartitionBuffer();
+                        partitionBuffer.writeLong( i );
+                        partitionBuffer.free();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+    }
+
+    @Override
+    protected void finalize()
+    {
+        pool.close();
+    }
+
+}
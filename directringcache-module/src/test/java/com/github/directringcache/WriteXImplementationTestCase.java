@@ -151,4 +151,106 @@ public class WriteXImplementationTestCase
         }
     }
 
+    @Test
+    public void testWriteLong()
+        throws Exception
+    {
+        PartitionSliceSelector partitionSliceSelector = new RoundRobinPartitionSliceSelector();
+        PartitionFactory partitionFactory = ByteBufferPooledPartition.DIRECT_BYTEBUFFER_PARTITION_FACTORY;
+        PartitionBufferBuilder builder = new PartitionBufferBuilder( partitionFactory, partitionSliceSelector );
+        PartitionBufferPool pool = builder.allocatePool( "500M", 50, "256K" );
+
+        try
+        {
+            System.out.println( "Pool slices " + pool.getSliceCount() + "(" + pool.getAllocatedMemory()
+                + " bytes), unused " + pool.getFreeSliceCount() );
+
+            long bytes = BufferUtils.descriptorToByteSize( "256K" ) * 20;
+
+            PartitionBuffer partitionBuffer = pool.getPartitionBuffer();
+            assertEquals( BufferUtils.descriptorToByteSize( "256K" ), partitionBuffer.maxCapacity() );
+            System.out.println( "Pool slices " + pool.getSliceCount() + "(" + pool.getAllocatedMemory()
+                + " bytes), unused " + pool.getFreeSliceCount() );
+
+            // Shift all longs by one byte so that every slice boundary is crossed by a long
+            partitionBuffer.writeByte( 1 );
+            for ( int i = 0; i < bytes / 8 + 1; i++ )
+            {
+                partitionBuffer.writeLong( -75555075555075L );
+            }
+            assertEquals( BufferUtils.descriptorToByteSize( "256K" ) * 21, partitionBuffer.maxCapacity() );
+            assertEquals( BufferUtils.descriptorToByteSize( "256K" ) * 20 + 9, partitionBuffer.capacity() );
+            System.out.println( "Pool slices " + pool.getSliceCount() + "(" + pool.getAllocatedMemory()
+                + " bytes), unused " + pool.getFreeSliceCount() );
+
+            assertEquals( 1, partitionBuffer.readByte() );
+            for ( int i = 0; i < bytes / 8 + 1; i++ )
+            {
+                assertEquals( "Wrong value at position " + i, -75555075555075L, partitionBuffer.readLong() );
+            }
+
+            pool.freePartitionBuffer( partitionBuffer );
+            System.out.println( "Pool slices " + pool.getSliceCount() + "(" + pool.getAllocatedMemory()
+                + " bytes), unused " + pool.getFreeSliceCount() );
+
+        }
+        finally
+        {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testWriteBytes()
+        throws Exception
+    {
+        for ( Object partitionFactory : TestCaseConstants.PARTITION_FACTORIES )
+        {
+            PartitionSliceSelector partitionSliceSelector = new RoundRobinPartitionSliceSelector();
+            PartitionBufferBuilder builder =
+                new PartitionBufferBuilder( (PartitionFactory) partitionFactory, partitionSliceSelector );
+            PartitionBufferPool pool = builder.allocatePool( "8M", 8, "4K" );
+
+            try
+            {
+                String partitionFactoryName = TestCaseConstants.buildPartitionFactoryName( partitionFactory );
+
+                byte[] block = new byte[(int) BufferUtils.descriptorToByteSize( "4K" ) * 10 + 123];
+                for ( int i = 0; i < block.length; i++ )
+                {
+                    block[i] = (byte) ( i * 31 );
+                }
+
+                PartitionBuffer partitionBuffer = pool.getPartitionBuffer();
+
+                // Start unaligned so every bulk write spans slice boundaries
+                partitionBuffer.writeByte( 7 );
+                partitionBuffer.writeBytes( block );
+                partitionBuffer.writeBytes( block, 1000, 5000 );
+                assertEquals( partitionFactoryName, 1 + block.length + 5000, partitionBuffer.capacity() );
+                assertEquals( partitionFactoryName, 12, partitionBuffer.slices() );
+
+                assertEquals( partitionFactoryName, 7, partitionBuffer.readByte() );
+                byte[] result = new byte[block.length];
+                partitionBuffer.readBytes( result );
+                for ( int i = 0; i < block.length; i++ )
+                {
+                    assertEquals( partitionFactoryName + ": Wrong value at position " + i, block[i], result[i] );
+                }
+
+                partitionBuffer.readBytes( result, 0, 5000 );
+                for ( int i = 0; i < 5000; i++ )
+                {
+                    assertEquals( partitionFactoryName + ": Wrong value at position " + i, block[1000 + i], result[i] );
+                }
+
+                pool.freePartitionBuffer( partitionBuffer );
+            }
+            finally
+            {
+                pool.close();
+            }
+        }
+    }
+
 }